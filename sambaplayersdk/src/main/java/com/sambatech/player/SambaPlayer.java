@@ -4,6 +4,7 @@ import android.app.Activity;
 import android.content.Context;
 import android.content.res.TypedArray;
 import android.support.annotation.NonNull;
+import android.support.v4.view.ViewCompat;
 import android.util.AttributeSet;
 import android.util.Log;
 import android.view.OrientationEventListener;
@@ -37,9 +38,11 @@ import com.sambatech.player.cast.CastPlayer;
 import com.sambatech.player.cast.CastQuery;
 import com.sambatech.player.cast.SambaCast;
 import com.sambatech.player.event.SambaCastListener;
+import com.sambatech.player.event.SambaErrorEvent;
 import com.sambatech.player.event.SambaEvent;
-import com.sambatech.player.event.SambaEventBus;
+import com.sambatech.player.event.SambaPlayerEventBus;
 import com.sambatech.player.event.SambaPlayerListener;
+import com.sambatech.player.event.SambaProgressEvent;
 import com.sambatech.player.mediasource.PlayerInstanceDefault;
 import com.sambatech.player.mediasource.PlayerMediaSourceDash;
 import com.sambatech.player.mediasource.PlayerMediaSourceExtractor;
@@ -52,6 +55,8 @@ import com.sambatech.player.plugins.PluginManager;
 import com.sambatech.player.utils.CastLiveButtonListener;
 import com.sambatech.player.utils.Helpers;
 import com.sambatech.player.utils.Orientation;
+import com.sambatech.player.utils.SambaExecutor;
+import com.sambatech.player.utils.SambaScheduler;
 
 import java.io.IOException;
 import java.net.HttpURLConnection;
@@ -59,8 +64,6 @@ import java.net.URL;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
-import java.util.Timer;
-import java.util.TimerTask;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 
@@ -73,6 +76,9 @@ import static android.content.ContentValues.TAG;
  */
 public class SambaPlayer extends FrameLayout {
 
+    private static final long PROGRESS_INTERVAL = 250;
+    private static final long IDLE_PROGRESS_INTERVAL = 1000;
+
     private final Player.DefaultEventListener playerEventListener = new Player.DefaultEventListener() {
 
         @Override
@@ -105,7 +111,7 @@ public class SambaPlayer extends FrameLayout {
                             _currentRetryIndex = 0;
 
                             destroyError();
-                            SambaEventBus.post(new SambaEvent(SambaPlayerListener.EventType.START));
+                            eventBus.post(SambaEvent.of(SambaPlayerListener.EventType.START));
 
                             // initial position
                             if (!media.isLive && _initialTime > 0) {
@@ -134,7 +140,7 @@ public class SambaPlayer extends FrameLayout {
                     player.seekTo(0);
                     Log.d(TAG, "onPlayerStateChanged: " + player.isPlayingAd());
                     stopProgressTimer();
-                    SambaEventBus.post(new SambaEvent(SambaPlayerListener.EventType.FINISH));
+                    eventBus.post(SambaEvent.of(SambaPlayerListener.EventType.FINISH));
                     _hasFinished = true;
                     simplePlayerView.updatePlayPause(PlayPauseState.Pause);
 
@@ -146,23 +152,17 @@ public class SambaPlayer extends FrameLayout {
                     // buffering timeout
                     final AtomicInteger secs = new AtomicInteger(20);
 
-                    errorTimer = new Timer();
-                    errorTimer.scheduleAtFixedRate(new TimerTask() {
+                    errorTimer = SambaScheduler.getInstance().schedulePeriodic(new Runnable() {
                         @Override
                         public void run() {
-                            ((Activity) getContext()).runOnUiThread(new Runnable() {
-                                @Override
-                                public void run() {
-                                    // on buffer timeout disable ABR (sets to lower)
-                                    if (secs.get() == 0) {
-                                        stopErrorTimer();
-                                    }
+                            // on buffer timeout disable ABR (sets to lower)
+                            if (secs.get() == 0) {
+                                stopErrorTimer();
+                            }
 
-                                    secs.decrementAndGet();
-                                }
-                            });
+                            secs.decrementAndGet();
                         }
-                    }, 0, 1000);
+                    }, 1000);
                     break;
             }
         }
@@ -231,7 +231,7 @@ public class SambaPlayer extends FrameLayout {
                         @Override
                         public void onSuccess(String response) {
                             // check whether it can fallback (changes error criticity) or fail otherwise
-                            ((Activity) getContext()).runOnUiThread(new Runnable() {
+                            SambaExecutor.runOnMainThread(new Runnable() {
                                 @Override
                                 public void run() {
                                     if (_currentBackupIndex < media.backupUrls.length) {
@@ -268,27 +268,21 @@ public class SambaPlayer extends FrameLayout {
 
                 stopErrorTimer();
 
-                errorTimer = new Timer();
-                errorTimer.scheduleAtFixedRate(new TimerTask() {
+                errorTimer = SambaScheduler.getInstance().schedulePeriodic(new Runnable() {
                     @Override
                     public void run() {
-                        ((Activity) getContext()).runOnUiThread(new Runnable() {
-                            @Override
-                            public void run() {
-                                if (secs.get() == 0) {
-                                    stopErrorTimer();
-                                    create(false);
-                                }
+                        if (secs.get() == 0) {
+                            stopErrorTimer();
+                            create(false);
+                        }
 
-                                dispatchError(SambaPlayerError.unknown.setValues(SambaPlayerError.unknown.getCode(),
-                                        secs.get() > 0 ? String.format("Reconectando em %ss", secs) : "Conectando...",
-                                        SambaPlayerError.Severity.info, error, R.drawable.sambaplayer_ic_nosignal));
+                        dispatchError(SambaPlayerError.unknown.setValues(SambaPlayerError.unknown.getCode(),
+                                secs.get() > 0 ? String.format("Reconectando em %ss", secs) : "Conectando...",
+                                SambaPlayerError.Severity.info, error, R.drawable.sambaplayer_ic_nosignal));
 
-                                secs.decrementAndGet();
-                            }
-                        });
+                        secs.decrementAndGet();
                     }
-                }, 0, 1000);
+                }, 1000);
                 return;
             }
 
@@ -319,22 +313,30 @@ public class SambaPlayer extends FrameLayout {
     private final SambaSimplePlayerView.FullscreenCallback fullscreenListener = new SambaSimplePlayerView.FullscreenCallback() {
         @Override
         public void onGoToFullscreen() {
-            SambaEventBus.post(new SambaEvent(SambaPlayerListener.EventType.FULLSCREEN));
+            eventBus.post(SambaEvent.of(SambaPlayerListener.EventType.FULLSCREEN));
         }
 
         @Override
         public void onReturnFromFullscreen() {
-            SambaEventBus.post(new SambaEvent(SambaPlayerListener.EventType.FULLSCREEN_EXIT));
+            eventBus.post(SambaEvent.of(SambaPlayerListener.EventType.FULLSCREEN_EXIT));
         }
     };
 
 
+    private final SambaPlayerEventBus eventBus = new SambaPlayerEventBus();
+    private final PluginManager pluginManager = new PluginManager(this);
+    // reused on every tick
+    private final SambaProgressEvent progressEvent = new SambaProgressEvent();
+
     private final Runnable progressDispatcher = new Runnable() {
         @Override
         public void run() {
             if (player == null) return;
 
-            SambaEventBus.post(new SambaEvent(SambaPlayerListener.EventType.PROGRESS, getCurrentTime(), getDuration()));
+            eventBus.post(progressEvent.set(getCurrentTime(), getDuration(), getBufferedTime()));
+
+            if (progressTimer != null)
+                progressTimer.setInterval(getProgressInterval());
         }
     };
 
@@ -352,7 +354,7 @@ public class SambaPlayer extends FrameLayout {
             stopProgressTimer();
             player.setPlayWhenReady(false);
 
-            SambaEventBus.post(new SambaEvent(SambaPlayerListener.EventType.CAST_CONNECT));
+            eventBus.post(SambaEvent.of(SambaPlayerListener.EventType.CAST_CONNECT));
 
             final RemoteMediaClient remoteMediaClient = castSession.getRemoteMediaClient();
             if (remoteMediaClient == null) return;
@@ -445,7 +447,7 @@ public class SambaPlayer extends FrameLayout {
         @Override
         public void onDisconnected() {
             SambaCast.cleanCacheDatas(getContext());
-            SambaEventBus.post(new SambaEvent(SambaPlayerListener.EventType.CAST_DISCONNECT));
+            eventBus.post(SambaEvent.of(SambaPlayerListener.EventType.CAST_DISCONNECT));
             long lastPosition = castPlayer.getContentPosition();
 
             if (simplePlayerView != null) {
@@ -470,7 +472,7 @@ public class SambaPlayer extends FrameLayout {
     private View errorScreen;
     private @NonNull
     SambaMediaConfig media = new SambaMediaConfig();
-    private Timer progressTimer;
+    private SambaScheduler.Task progressTimer;
     private boolean _hasStarted;
     private boolean _hasFinished;
     private OrientationEventListener orientationEventListener;
@@ -481,7 +483,7 @@ public class SambaPlayer extends FrameLayout {
 
     private float _initialTime = 0f;
     private Boolean _initialFullscreen = null;
-    private Timer errorTimer;
+    private SambaScheduler.Task errorTimer;
     private List<String> controlsHidden = new ArrayList<>();
     private boolean _abrEnabled = true;
     private int _forceOutputIndexTo = -1;
@@ -528,7 +530,28 @@ public class SambaPlayer extends FrameLayout {
 
         // TODO: create thumbnail or create audio player
 
-        PluginManager.getInstance().onLoad(this);
+        pluginManager.onLoad(this);
+    }
+
+    /**
+     * Retrieves the event bus of this player.
+     * Its listeners only receive events from this player (unlike the global <code>SambaEventBus</code>).
+     *
+     * @return The player event bus
+     */
+    public @NonNull
+    SambaPlayerEventBus getEventBus() {
+        return eventBus;
+    }
+
+    /**
+     * Retrieves the plugins manager of this player (e.g. <code>getQoeStats()</code>).
+     *
+     * @return The player plugins manager
+     */
+    public @NonNull
+    PluginManager getPluginManager() {
+        return pluginManager;
     }
 
     /**
@@ -558,8 +581,8 @@ public class SambaPlayer extends FrameLayout {
         if (_disabled || errorScreen != null) return;
 
         // defer play if plugins not loaded yet
-        if (!PluginManager.getInstance().isLoaded()) {
-            PluginManager.getInstance().setPendingPlay(true);
+        if (!pluginManager.isLoaded()) {
+            pluginManager.setPendingPlay(true);
             return;
         }
 
@@ -579,7 +602,7 @@ public class SambaPlayer extends FrameLayout {
             player.setPlayWhenReady(false);
         } else {
             player.setPlayWhenReady(true);
-            SambaEventBus.post(new SambaEvent(SambaPlayerListener.EventType.PLAY));
+            eventBus.post(SambaEvent.of(SambaPlayerListener.EventType.PLAY));
         }
     }
 
@@ -599,7 +622,7 @@ public class SambaPlayer extends FrameLayout {
             castPlayer.setPlayWhenReady(false);
         } else {
             player.setPlayWhenReady(false);
-            SambaEventBus.post(new SambaEvent(SambaPlayerListener.EventType.PAUSE));
+            eventBus.post(SambaEvent.of(SambaPlayerListener.EventType.PAUSE));
         }
     }
 
@@ -613,7 +636,7 @@ public class SambaPlayer extends FrameLayout {
         } else {
             player.stop();
         }
-        SambaEventBus.post(new SambaEvent(SambaPlayerListener.EventType.STOP));
+        eventBus.post(SambaEvent.of(SambaPlayerListener.EventType.STOP));
     }
 
     /**
@@ -701,6 +724,13 @@ public class SambaPlayer extends FrameLayout {
         return player != null ? player.getCurrentPosition() / 1000f : 0f;
     }
 
+    private float getBufferedTime() {
+        if (sambaCast != null && sambaCast.isCasting() && castPlayer != null)
+            return castPlayer.getBufferedPosition() / 1000f;
+
+        return player != null ? player.getBufferedPosition() / 1000f : 0f;
+    }
+
     /**
      * Gets the total duration of the video.
      *
@@ -817,9 +847,9 @@ public class SambaPlayer extends FrameLayout {
      * @param error Error type to show
      */
     public void destroy(SambaPlayerError error) {
-        PluginManager.getInstance().onDestroy();
+        pluginManager.onDestroy();
         destroyInternal();
-        SambaEventBus.post(new SambaEvent(SambaPlayerListener.EventType.DESTROY));
+        eventBus.post(SambaEvent.of(SambaPlayerListener.EventType.DESTROY));
 
         if (error != null)
             showError(error);
@@ -924,10 +954,10 @@ public class SambaPlayer extends FrameLayout {
             //if (!_enableControls)
             //player.disableControls();
 
-            PluginManager.getInstance().onInternalPlayerCreated(simplePlayerView.getPlayerView());
+            pluginManager.onInternalPlayerCreated(simplePlayerView.getPlayerView());
 
             if (notify)
-                SambaEventBus.post(new SambaEvent(SambaPlayerListener.EventType.LOAD, this));
+                eventBus.post(new SambaEvent(SambaPlayerListener.EventType.LOAD, this));
         }
 
         if (media.isAudioOnly) {
@@ -974,15 +1004,15 @@ public class SambaPlayer extends FrameLayout {
                 switch (lastRotatedTo) {
                     case Orientation.PORTRAIT:
                         simplePlayerView.setFullscreen(false);
-                        SambaEventBus.post(new SambaEvent(SambaPlayerListener.EventType.PORTRAIT));
+                        eventBus.post(SambaEvent.of(SambaPlayerListener.EventType.PORTRAIT));
                         break;
                     case Orientation.REVERSE_LANDSCAPE:
                         simplePlayerView.setFullscreen(true, true);
-                        SambaEventBus.post(new SambaEvent(SambaPlayerListener.EventType.LANDSCAPE));
+                        eventBus.post(SambaEvent.of(SambaPlayerListener.EventType.LANDSCAPE));
                         break;
                     case Orientation.LANDSCAPE:
                         simplePlayerView.setFullscreen(true, false);
-                        SambaEventBus.post(new SambaEvent(SambaPlayerListener.EventType.LANDSCAPE));
+                        eventBus.post(SambaEvent.of(SambaPlayerListener.EventType.LANDSCAPE));
                         break;
                     default:
                         break;
@@ -1077,17 +1107,26 @@ public class SambaPlayer extends FrameLayout {
         errorScreen = null;
     }
 
+    @Override
+    protected void onAttachedToWindow() {
+        super.onAttachedToWindow();
+
+        if (isPlaying())
+            startProgressTimer();
+    }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        stopProgressTimer();
+        super.onDetachedFromWindow();
+    }
+
     private void startProgressTimer() {
-        if (progressTimer != null)
+        // no progress while off screen (resumes once attached)
+        if (progressTimer != null || !ViewCompat.isAttachedToWindow(this))
             return;
 
-        progressTimer = new Timer();
-        progressTimer.scheduleAtFixedRate(new TimerTask() {
-            @Override
-            public void run() {
-                ((Activity) getContext()).runOnUiThread(progressDispatcher);
-            }
-        }, 0, 250);
+        progressTimer = SambaScheduler.getInstance().schedulePeriodic(progressDispatcher, getProgressInterval());
     }
 
     private void stopProgressTimer() {
@@ -1095,30 +1134,37 @@ public class SambaPlayer extends FrameLayout {
             return;
 
         progressTimer.cancel();
-        progressTimer.purge();
         progressTimer = null;
     }
 
+    /**
+     * Ticks as often as progress listeners need (listeners subscribed later are served within the idle interval).
+     */
+    private long getProgressInterval() {
+        long interval = eventBus.getProgressInterval();
+
+        return interval < 0 ? IDLE_PROGRESS_INTERVAL : Math.min(Math.max(interval, PROGRESS_INTERVAL), IDLE_PROGRESS_INTERVAL);
+    }
+
     private void stopErrorTimer() {
         if (errorTimer == null) return;
         errorTimer.cancel();
-        errorTimer.purge();
         errorTimer = null;
     }
 
     private void dispatchPlay() {
-        SambaEventBus.post(new SambaEvent(SambaPlayerListener.EventType.PLAY));
+        eventBus.post(SambaEvent.of(SambaPlayerListener.EventType.PLAY));
         startProgressTimer();
     }
 
     private void dispatchPause() {
         stopProgressTimer();
-        SambaEventBus.post(new SambaEvent(SambaPlayerListener.EventType.PAUSE));
+        eventBus.post(SambaEvent.of(SambaPlayerListener.EventType.PAUSE));
     }
 
     private void dispatchError(@NonNull SambaPlayerError error) {
         // give user the chance to customize error message before showing it (in case of critical)
-        SambaEventBus.post(new SambaEvent(SambaPlayerListener.EventType.ERROR, error));
+        eventBus.post(new SambaErrorEvent(error));
 
         switch (error.getSeverity()) {
             case critical:
@@ -1135,6 +1181,6 @@ public class SambaPlayer extends FrameLayout {
     private void setupCast() {
         if (sambaCast == null || media.isAudioOnly) return;
         sambaCast.setEventListener(castListener);
-        castPlayer = new CastPlayer(getContext(), sambaCast);
+        castPlayer = new CastPlayer(getContext(), sambaCast, eventBus);
     }
 }
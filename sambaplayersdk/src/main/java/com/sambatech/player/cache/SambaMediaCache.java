@@ -0,0 +1,454 @@
+package com.sambatech.player.cache;
+
+import android.content.Context;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.util.Log;
+
+import com.sambatech.player.model.SambaMediaConfig;
+import com.sambatech.player.model.SambaMediaRequest;
+import com.sambatech.player.plugins.DrmRequest;
+import com.sambatech.player.utils.Helpers;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Two-level cache for media data resolved by <code>SambaApi</code>, keyed by the request URL and
+ * the request options the parsed media depends on (see {@link #getKey(String, SambaMediaRequest)}).
+ *
+ * The first level keeps parsed medias in memory (LRU), the second one keeps the raw
+ * server token on disk so it survives process restarts. Entries older than the TTL are
+ * considered stale: they are still served (up to the max stale age) while being refreshed
+ * in background.
+ *
+ * Every memory lookup counts as a hit (fresh or stale) or a miss, including lookups made while
+ * the cache is disabled. Misses resolved from disk are counted apart (disk hits), as they still
+ * wait for a background task.
+ */
+public final class SambaMediaCache {
+
+	public static final long DEFAULT_TTL = 5 * 60 * 1000;
+	public static final long DEFAULT_MAX_STALE = 30 * 60 * 1000;
+
+	private static final int MEMORY_ENTRIES = 50;
+	private static final int DISK_ENTRIES = 100;
+	private static final String DIRECTORY = "sambaplayer_media";
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+	private static SambaMediaCache instance;
+
+	private final Map<String, Entry> memory = new LinkedHashMap<String, Entry>(MEMORY_ENTRIES, .75f, true) {
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+			return size() > MEMORY_ENTRIES;
+		}
+	};
+	private final File directory;
+	private final AtomicLong memoryHits = new AtomicLong();
+	private final AtomicLong diskHits = new AtomicLong();
+	private final AtomicLong staleHits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+
+	private volatile boolean enabled = true;
+	private volatile long ttl = DEFAULT_TTL;
+	private volatile long maxStale = DEFAULT_MAX_STALE;
+
+	SambaMediaCache(@NonNull File directory) {
+		this.directory = directory;
+	}
+
+	public static synchronized SambaMediaCache getInstance(@NonNull Context context) {
+		if (instance == null)
+			instance = new SambaMediaCache(new File(context.getApplicationContext().getCacheDir(), DIRECTORY));
+
+		return instance;
+	}
+
+	/**
+	 * Enables or disables the cache (enabled by default).
+	 * Disabling it does not clear current entries.
+	 *
+	 * @param enabled Whether medias should be served from cache
+	 */
+	public void setEnabled(boolean enabled) {
+		this.enabled = enabled;
+	}
+
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	/**
+	 * Sets how long an entry is served without being refreshed.
+	 *
+	 * @param ttl Time in milliseconds
+	 */
+	public void setTtl(long ttl) {
+		this.ttl = ttl;
+	}
+
+	public long getTtl() {
+		return ttl;
+	}
+
+	/**
+	 * Sets the maximum age of an entry, after which it can no longer be served (not even stale).
+	 *
+	 * @param maxStale Time in milliseconds
+	 */
+	public void setMaxStale(long maxStale) {
+		this.maxStale = maxStale;
+	}
+
+	public long getMaxStale() {
+		return maxStale;
+	}
+
+	/**
+	 * Retrieves a snapshot of the hit/miss counters.
+	 *
+	 * @return Cache statistics
+	 */
+	public @NonNull Stats getStats() {
+		return new Stats(memoryHits.get(), diskHits.get(), staleHits.get(), misses.get());
+	}
+
+	public void resetStats() {
+		memoryHits.set(0);
+		diskHits.set(0);
+		staleHits.set(0);
+		misses.set(0);
+	}
+
+	/**
+	 * Removes all entries from memory and disk.
+	 */
+	public void clear() {
+		synchronized (memory) {
+			memory.clear();
+		}
+
+		File[] files = directory.listFiles();
+
+		if (files == null) return;
+
+		for (File file : files)
+			file.delete();
+	}
+
+	/**
+	 * Builds the key of a request: medias of the same URL are parsed differently depending on
+	 * the request protocol (URLs scheme) and audio stream flag (audio only).
+	 *
+	 * @param url The request URL
+	 * @param request The request
+	 * @return The cache key
+	 */
+	public static @NonNull String getKey(@NonNull String url, @NonNull SambaMediaRequest request) {
+		return url + '#' + request.protocol + (request.isStreamAudio ? ",audio" : "");
+	}
+
+	/**
+	 * Looks up a parsed media in memory, counting a hit or a miss.
+	 *
+	 * @param key The request key
+	 * @return A fresh or stale entry or null if there is none usable
+	 */
+	public @Nullable Entry lookup(@NonNull String key) {
+		Entry entry = enabled ? getMemory(key) : null;
+
+		if (entry == null) {
+			misses.incrementAndGet();
+			return null;
+		}
+
+		(entry.isFresh() ? memoryHits : staleHits).incrementAndGet();
+		return entry;
+	}
+
+	/**
+	 * Looks up a raw token on disk (after a memory miss).
+	 * Performs I/O, must not be called on the main thread.
+	 *
+	 * @param key The request key
+	 * @return A fresh or stale entry (without parsed media) or null if there is none usable
+	 */
+	public @Nullable Entry lookupDisk(@NonNull String key) {
+		if (!enabled) return null;
+
+		Entry entry = read(key);
+
+		return entry != null && entry.isUsable() ? entry : null;
+	}
+
+	/**
+	 * Stores a freshly requested media.
+	 * Performs I/O, must not be called on the main thread.
+	 *
+	 * @param key The request key
+	 * @param token The raw server response
+	 * @param media The parsed media
+	 */
+	public void put(@NonNull String key, @NonNull byte[] token, @NonNull SambaMediaConfig media) {
+		if (!enabled) return;
+
+		long now = System.currentTimeMillis();
+
+		putMemory(key, new Entry(token, copyOf(media, media.request), now));
+		write(key, token, now);
+	}
+
+	/**
+	 * Stores in memory a media parsed from a disk entry (keeps its original age),
+	 * counting a disk hit.
+	 *
+	 * @param key The request key
+	 * @param entry The disk entry
+	 * @param media The media parsed from the entry token
+	 */
+	public void putMemory(@NonNull String key, @NonNull Entry entry, @NonNull SambaMediaConfig media) {
+		if (!enabled) return;
+
+		diskHits.incrementAndGet();
+		putMemory(key, new Entry(entry.token, copyOf(media, media.request), entry.storedAt));
+	}
+
+	public void remove(@NonNull String key) {
+		synchronized (memory) {
+			memory.remove(key);
+		}
+
+		getFile(key).delete();
+	}
+
+	/**
+	 * Creates a media instance for a new caller out of a cached one.
+	 * Mutable data (session, DRM params, lists and settings) is not shared between copies.
+	 *
+	 * @param media The cached media
+	 * @param request The caller request
+	 * @return A new media instance
+	 */
+	public @NonNull SambaMediaConfig copyOf(@NonNull SambaMediaConfig media, SambaMediaRequest request) {
+		SambaMediaConfig m = new SambaMediaConfig(media);
+
+		m.sessionId = Helpers.getSessionId();
+		m.request = request;
+		m.blockIfRooted = media.blockIfRooted;
+
+		if (media.drmRequest != null)
+			m.drmRequest = new DrmRequest(media.drmRequest);
+
+		return m;
+	}
+
+	private Entry getMemory(String key) {
+		synchronized (memory) {
+			Entry entry = memory.get(key);
+
+			if (entry != null && !entry.isUsable()) {
+				memory.remove(key);
+				return null;
+			}
+
+			return entry;
+		}
+	}
+
+	private void putMemory(String key, Entry entry) {
+		synchronized (memory) {
+			memory.put(key, entry);
+		}
+	}
+
+	private Entry read(String key) {
+		File file = getFile(key);
+
+		if (!file.exists())
+			return null;
+
+		DataInputStream in = null;
+
+		try {
+			in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+
+			// same hash, different key
+			if (!key.equals(in.readUTF()))
+				return null;
+
+			long storedAt = in.readLong();
+			byte[] token = new byte[in.readInt()];
+
+			in.readFully(token);
+
+			return new Entry(token, null, storedAt);
+		}
+		catch (IOException e) {
+			Log.w(getClass().getSimpleName(), "Error reading cache entry", e);
+			file.delete();
+		}
+		finally {
+			close(in);
+		}
+
+		return null;
+	}
+
+	private void write(String key, byte[] token, long storedAt) {
+		if (!directory.exists() && !directory.mkdirs())
+			return;
+
+		File file = getFile(key);
+		DataOutputStream out = null;
+
+		try {
+			out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+			out.writeUTF(key);
+			out.writeLong(storedAt);
+			out.writeInt(token.length);
+			out.write(token);
+		}
+		catch (IOException e) {
+			Log.w(getClass().getSimpleName(), "Error writing cache entry", e);
+			file.delete();
+		}
+		finally {
+			close(out);
+		}
+
+		trimDisk();
+	}
+
+	private void trimDisk() {
+		File[] files = directory.listFiles();
+
+		if (files == null || files.length <= DISK_ENTRIES)
+			return;
+
+		// oldest first
+		Arrays.sort(files, new Comparator<File>() {
+			@Override
+			public int compare(File lhs, File rhs) {
+				long diff = lhs.lastModified() - rhs.lastModified();
+				return diff < 0 ? -1 : diff > 0 ? 1 : 0;
+			}
+		});
+
+		for (int i = 0, l = files.length - DISK_ENTRIES; i < l; ++i)
+			files[i].delete();
+	}
+
+	private File getFile(String key) {
+		return new File(directory, hash(key));
+	}
+
+	private static String hash(String s) {
+		try {
+			StringBuilder sb = new StringBuilder();
+
+			for (byte b : MessageDigest.getInstance("MD5").digest(s.getBytes(UTF_8)))
+				sb.append(String.format("%02x", b));
+
+			return sb.toString();
+		}
+		catch (NoSuchAlgorithmException e) {
+			return Integer.toHexString(s.hashCode());
+		}
+	}
+
+	private static void close(Closeable closeable) {
+		if (closeable == null) return;
+
+		try {
+			closeable.close();
+		}
+		catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * A cached media (memory) or raw token (disk).
+	 */
+	public final class Entry {
+		public final byte[] token;
+		public final SambaMediaConfig media;
+		public final long storedAt;
+
+		Entry(byte[] token, SambaMediaConfig media, long storedAt) {
+			this.token = token;
+			this.media = media;
+			this.storedAt = storedAt;
+		}
+
+		public boolean isFresh() {
+			return System.currentTimeMillis() - storedAt < ttl;
+		}
+
+		boolean isUsable() {
+			return System.currentTimeMillis() - storedAt < Math.max(ttl, maxStale);
+		}
+	}
+
+	/**
+	 * Snapshot of cache counters.
+	 */
+	public static final class Stats {
+		/** Fresh medias served from memory. */
+		public final long memoryHits;
+		/** Memory misses resolved from disk. */
+		public final long diskHits;
+		/** Stale medias served from memory (refreshed in background). */
+		public final long staleHits;
+		/** Memory lookups which found no usable media. */
+		public final long misses;
+
+		Stats(long memoryHits, long diskHits, long staleHits, long misses) {
+			this.memoryHits = memoryHits;
+			this.diskHits = diskHits;
+			this.staleHits = staleHits;
+			this.misses = misses;
+		}
+
+		public long getRequests() {
+			return memoryHits + staleHits + misses;
+		}
+
+		/**
+		 * @return Requests served right away from memory (fresh or stale), 0-1
+		 */
+		public float getHitRatio() {
+			long total = getRequests();
+			return total > 0 ? (total - misses) / (float)total : 0f;
+		}
+
+		/**
+		 * @return Requests served from memory or disk (without requesting the server), 0-1
+		 */
+		public float getCacheRatio() {
+			long total = getRequests();
+			return total > 0 ? (total - misses + diskHits) / (float)total : 0f;
+		}
+
+		@Override
+		public String toString() {
+			return String.format("memoryHits: %s, diskHits: %s, staleHits: %s, misses: %s", memoryHits, diskHits, staleHits, misses);
+		}
+	}
+}
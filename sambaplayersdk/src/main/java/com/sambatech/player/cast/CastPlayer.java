@@ -49,6 +49,7 @@ import com.google.android.gms.common.api.PendingResult;
 import com.google.android.gms.common.api.ResultCallback;
 import com.sambatech.player.event.SambaEvent;
 import com.sambatech.player.event.SambaEventBus;
+import com.sambatech.player.event.SambaPlayerEventBus;
 import com.sambatech.player.event.SambaPlayerListener;
 
 import org.json.JSONException;
@@ -77,6 +78,7 @@ import java.util.concurrent.CopyOnWriteArraySet;
 public final class CastPlayer implements Player {
 
   private final Context context;
+  private final SambaPlayerEventBus eventBus;
 
   /**
    * Listener of changes in the cast session availability.
@@ -172,7 +174,7 @@ public final class CastPlayer implements Player {
             playWhenReady = false;
             SambaCast.setCurrentStatus(context, playWhenReady);
             updateInternalState();
-            SambaEventBus.post(new SambaEvent(SambaPlayerListener.EventType.CAST_FINISH));
+            postEvent(SambaEvent.of(SambaPlayerListener.EventType.CAST_FINISH));
           }
         }
       } catch (JSONException e) {
@@ -186,7 +188,17 @@ public final class CastPlayer implements Player {
    * @param sambaCast The context from which the cast session is obtained.
    */
   public CastPlayer(Context context, SambaCast sambaCast) {
+    this(context, sambaCast, null);
+  }
+
+  /**
+   * @param context
+   * @param sambaCast The context from which the cast session is obtained.
+   * @param eventBus The bus of the player being cast (null for the global one).
+   */
+  public CastPlayer(Context context, SambaCast sambaCast, SambaPlayerEventBus eventBus) {
     this.context = context;
+    this.eventBus = eventBus;
     this.sambaCast = sambaCast;
     this.castContext = sambaCast.getCastContext();
     timelineTracker = new CastTimelineTracker();
@@ -424,10 +436,10 @@ public final class CastPlayer implements Player {
 
     if (playWhenReady) {
       sambaCast.playCast();
-      SambaEventBus.post(new SambaEvent(SambaPlayerListener.EventType.CAST_PLAY));
+      postEvent(SambaEvent.of(SambaPlayerListener.EventType.CAST_PLAY));
     } else {
       sambaCast.pauseCast();
-      SambaEventBus.post(new SambaEvent(SambaPlayerListener.EventType.CAST_PAUSE));
+      postEvent(SambaEvent.of(SambaPlayerListener.EventType.CAST_PAUSE));
     }
   }
 
@@ -979,4 +991,9 @@ public final class CastPlayer implements Player {
     this.isLive = isLive;
   }
 
+  private void postEvent(SambaEvent event) {
+    if (eventBus != null)
+      eventBus.post(event);
+    else SambaEventBus.post(event);
+  }
 }
@@ -0,0 +1,34 @@
+package com.sambatech.player.event;
+
+import com.sambatech.player.model.SambaMedia;
+import com.sambatech.player.model.SambaMediaRequest;
+
+/**
+ * Listeners representing server responses for a batch of requests.
+ * All methods are fired up on the main thread.
+ */
+public abstract class SambaApiBatchCallback {
+
+	/**
+	 * Fired up as soon as a media of the batch gets resolved (in completion order).
+	 * @param index Position of the request in the batch
+	 * @param media SambaMedia
+	 */
+	public void onMediaResponse(int index, SambaMedia media) {}
+
+	/**
+	 * Fired up as soon as a media of the batch fails (in completion order).
+	 * @param index Position of the request in the batch
+	 * @param e The raised exception
+	 * @param request Original request
+	 */
+	public void onMediaResponseError(int index, Exception e, SambaMediaRequest request) {}
+
+	/**
+	 * Fired up after every request of the batch has been responded.
+	 * Both arrays are in request order and have the same length of the batch.
+	 * @param medias The resolved medias (null at failed positions)
+	 * @param errors The raised exceptions (null at succeeded positions)
+	 */
+	public void onBatchResponse(SambaMedia[] medias, Exception[] errors) {}
+}
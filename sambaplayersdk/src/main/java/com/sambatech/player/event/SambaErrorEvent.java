@@ -0,0 +1,59 @@
+package com.sambatech.player.event;
+
+import android.support.annotation.NonNull;
+
+import com.sambatech.player.model.SambaPlayerError;
+
+/**
+ * ERROR event with typed payload (<code>getData()</code> also returns the error, for compatibility).
+ *
+ * The event keeps the error values (code, message and severity) it was created with,
+ * as the shared error may be set again meanwhile.
+ */
+public class SambaErrorEvent extends SambaEvent {
+
+	private final SambaPlayerError error;
+	private final int code;
+	private final String message;
+	private final SambaPlayerError.Severity severity;
+
+	/**
+	 * @param error The error with its current values
+	 */
+	public SambaErrorEvent(@NonNull SambaPlayerError error) {
+		this(error, error.getCode(), error.getMessage(), error.getSeverity());
+	}
+
+	/**
+	 * Creates an event with its own values, the error itself is not changed (e.g. replayed events).
+	 *
+	 * @param error The error
+	 * @param code The error code
+	 * @param message The error message
+	 * @param severity The error severity
+	 */
+	public SambaErrorEvent(@NonNull SambaPlayerError error, int code, String message,
+						   @NonNull SambaPlayerError.Severity severity) {
+		super(SambaPlayerListener.EventType.ERROR, error);
+		this.error = error;
+		this.code = code;
+		this.message = message;
+		this.severity = severity;
+	}
+
+	public @NonNull SambaPlayerError getError() {
+		return error;
+	}
+
+	public int getCode() {
+		return code;
+	}
+
+	public String getMessage() {
+		return message;
+	}
+
+	public @NonNull SambaPlayerError.Severity getSeverity() {
+		return severity;
+	}
+}
@@ -5,6 +5,14 @@ package com.sambatech.player.event;
  */
 public class SambaEvent {
 
+	private static final Object[] NO_DATA = {};
+	private static final SambaEvent[] shared = new SambaEvent[SambaPlayerListener.EventType.values().length];
+
+	static {
+		for (SambaPlayerListener.EventType type : SambaPlayerListener.EventType.values())
+			shared[type.ordinal()] = new SambaEvent(type);
+	}
+
 	private final SambaEventType type;
 	private final Object data;
 	private final Object[] dataAll;
@@ -14,7 +22,7 @@ public class SambaEvent {
 	 * @param type {@link SambaPlayerListener.EventType}
 	 */
 	public SambaEvent(SambaEventType type) {
-		this(type, new Object[]{});
+		this(type, NO_DATA);
 	}
 
 	/**
@@ -29,6 +37,15 @@ public class SambaEvent {
 	}
 
 
+	/**
+	 * Retrieves a shared event with no data (events are immutable, so it can be posted any number of times).
+	 * @param type {@link SambaPlayerListener.EventType}
+	 * @return SambaEvent
+	 */
+	public static SambaEvent of(SambaPlayerListener.EventType type) {
+		return shared[type.ordinal()];
+	}
+
 	/**
 	 * Get the current event type
 	 * @return {@link SambaPlayerListener.EventType}
@@ -52,5 +69,13 @@ public class SambaEvent {
 	public Object[] getDataAll() {
 		return dataAll;
 	}
+
+	/**
+	 * Gets an instance that can be kept after dispatch (reusable events get copied).
+	 * @return SambaEvent
+	 */
+	SambaEvent detach() {
+		return this;
+	}
 }
 
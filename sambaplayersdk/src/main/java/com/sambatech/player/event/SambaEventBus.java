@@ -1,23 +1,81 @@
 package com.sambatech.player.event;
 
-import android.util.Log;
+import android.os.Handler;
+import android.os.Looper;
+import android.support.annotation.NonNull;
 
-import java.lang.reflect.Method;
-import java.lang.reflect.Modifier;
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
-import java.util.ListIterator;
+import com.sambatech.player.utils.SambaExecutor;
+import com.sambatech.player.utils.SambaMetrics;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.concurrent.Executor;
 
 /**
+ * Global event bus, receiving the events of every player (see <code>setFanInEnabled()</code>).
+ * Listeners interested in a single player should subscribe to <code>SambaPlayer.getEventBus()</code> instead.
+ *
  * @author Leandro Zanol - 10/12/15
  */
 public class SambaEventBus {
 
-	private static EventBus _eventBus = new EventBus();
+	public static final int DEFAULT_QUEUE_CAPACITY = 64;
+
+	/**
+	 * Where (which thread) events are delivered to a listener.
+	 */
+	public enum DeliveryMode {
+		/** Synchronously, on the thread that posted the event (default). */
+		POSTING,
+		/** On the main thread, always deferred (even if posted from it). */
+		MAIN,
+		/** On a background lane shared by every listener in this mode, one event at a time. */
+		BACKGROUND,
+		/** On a pool thread, each listener in this mode runs apart from (concurrently to) the others. */
+		ASYNC
+	}
+
+	/**
+	 * What to do when an event is posted to a listener whose queue is full.
+	 */
+	public enum OverflowPolicy {
+		/** Discards the oldest pending event. */
+		DROP_OLDEST,
+		/** Like <code>DROP_OLDEST</code>, and a pending PROGRESS event is always replaced by the latest one. */
+		COALESCE_LATEST,
+		/** Makes the posting thread wait (except on the main or a delivery thread, where it drops the oldest). */
+		BLOCK
+	}
+
+	private static final ThreadLocal<Boolean> isDeliveryThread = new ThreadLocal<>();
+	private static final Executor backgroundLane = new SerialExecutor();
+	// deliveries are measured per listener, not as UI hops
+	private static final Handler mainHandler = new Handler(Looper.getMainLooper());
+	private static final Executor mainThread = new Executor() {
+		@Override
+		public void execute(@NonNull Runnable task) {
+			mainHandler.post(task);
+		}
+	};
+
+	private static final SambaPlayerEventBus _eventBus = new SambaPlayerEventBus(false);
+	private static volatile boolean isFanInEnabled = true;
 
 	private SambaEventBus() {}
 
+	/**
+	 * Enables or disables the global bus receiving every player event (enabled by default).
+	 * When disabled, player events can only be listened to through <code>SambaPlayer.getEventBus()</code>.
+	 * @param enabled whether player events should be posted to the global bus
+	 */
+	public static void setFanInEnabled(boolean enabled) {
+		isFanInEnabled = enabled;
+	}
+
+	public static boolean isFanInEnabled() {
+		return isFanInEnabled;
+	}
+
 	/**
 	 * Registers an event.
 	 * @param listener listener object
@@ -26,8 +84,33 @@ public class SambaEventBus {
 		_eventBus.subscribe(listener);
 	}
 
+	/**
+	 * Registers an event, delivering it through a queue bounded to <code>DEFAULT_QUEUE_CAPACITY</code>
+	 * (except for <code>POSTING</code>) coalescing PROGRESS events.
+	 * @param listener listener object
+	 * @param mode where events are delivered to the listener
+	 * @return the subscription, for monitoring purposes
+	 */
+	public static Subscription subscribe(@NonNull SambaPlayerListener listener, @NonNull DeliveryMode mode) {
+		return subscribe(listener, mode, DEFAULT_QUEUE_CAPACITY, OverflowPolicy.COALESCE_LATEST);
+	}
+
+	/**
+	 * Registers an event.
+	 * @param listener listener object
+	 * @param mode where events are delivered to the listener
+	 * @param capacity max number of events pending delivery (ignored for <code>POSTING</code>)
+	 * @param policy what to do when the listener queue is full
+	 * @return the subscription, for monitoring purposes
+	 */
+	public static Subscription subscribe(@NonNull SambaPlayerListener listener, @NonNull DeliveryMode mode,
+										 int capacity, @NonNull OverflowPolicy policy) {
+		return _eventBus.subscribe(listener, mode, capacity, policy);
+	}
+
 	/**
 	 * Unregisters an event.
+	 * Events pending delivery to the listener are discarded.
 	 * @param listener listener object
 	 */
 	public static void unsubscribe(Object listener) {
@@ -42,95 +125,282 @@ public class SambaEventBus {
 		_eventBus.post(e);
 	}
 
-	private static class EventBus {
-		private HashMap<String, List<Object>> listeners = new HashMap<>();
-		private List<Object> postponedUnsubscribes;
+	/**
+	 * Posts an event from a player bus, measured by it.
+	 */
+	static void fanIn(SambaPlayerListener.EventType type, SambaEvent e) {
+		_eventBus.deliver(type, e);
+	}
 
-		public void subscribe(Object listener) {
-			String type = listener.getClass().getSuperclass().getSimpleName();
-			String k;
+	static long getProgressInterval() {
+		return _eventBus.getProgressInterval();
+	}
 
-			for (Method m : listener.getClass().getDeclaredMethods()) {
-				if (!Modifier.isPublic(m.getModifiers()))
-					continue;
+	/**
+	 * A listener registration and its delivery queue.
+	 * Queue depth and counters are meant for monitoring, they do not change for <code>POSTING</code>.
+	 *
+	 * PROGRESS events can be throttled to the granularity the listener needs (e.g. one per second),
+	 * the ones in between are never delivered (nor queued).
+	 */
+	public static final class Subscription {
+		final SambaPlayerListener listener;
+		private final DeliveryMode mode;
+		private final OverflowPolicy policy;
+		private final SambaEvent[] queue;
+		private final Runnable drain = new Runnable() {
+			@Override
+			public void run() {
+				drain();
+			}
+		};
+
+		private int head;
+		private int size;
+		private int progressIndex = -1;
+		private boolean isScheduled;
+		private boolean isActive = true;
+		private long droppedCount;
+		private long coalescedCount;
+
+		private volatile long minProgressIntervalNs;
+		private volatile float minProgressDelta;
+		private boolean hasDeliveredProgress;
+		private long lastProgressTime;
+		private float lastProgressPosition;
+
+		Subscription(SambaPlayerListener listener, DeliveryMode mode, int capacity, OverflowPolicy policy) {
+			this.listener = listener;
+			this.mode = mode;
+			this.policy = policy;
+			this.queue = mode != DeliveryMode.POSTING ? new SambaEvent[capacity] : null;
+		}
+
+		public DeliveryMode getMode() {
+			return mode;
+		}
 
-				k = String.format("%s:%s", type, m.getName().substring(2)); // rm "on"
+		/**
+		 * Sets the minimum (wall-clock) interval between delivered PROGRESS events.
+		 * @param millis interval in milliseconds (0 disables it)
+		 * @return the subscription itself
+		 */
+		public Subscription setMinProgressInterval(long millis) {
+			minProgressIntervalNs = millis * 1000000L;
+			return this;
+		}
 
-				if (!listeners.containsKey(k))
-					listeners.put(k, new ArrayList<>());
+		/**
+		 * Sets the minimum playback position change between delivered PROGRESS events.
+		 * @param seconds position delta in seconds (0 disables it)
+		 * @return the subscription itself
+		 */
+		public Subscription setMinProgressDelta(float seconds) {
+			minProgressDelta = seconds;
+			return this;
+		}
 
-				listeners.get(k).add(listener);
-			}
+		long getMinProgressInterval() {
+			return minProgressIntervalNs / 1000000L;
 		}
 
-		public void unsubscribe(Object listener) {
-			if (postponedUnsubscribes != null) {
-				postponedUnsubscribes.add(listener);
+		/**
+		 * @return number of events pending delivery
+		 */
+		public synchronized int getQueueDepth() {
+			return size;
+		}
+
+		/**
+		 * @return number of events discarded due to queue overflow
+		 */
+		public synchronized long getDroppedCount() {
+			return droppedCount;
+		}
+
+		/**
+		 * @return number of PROGRESS events replaced by a later one before being delivered
+		 */
+		public synchronized long getCoalescedCount() {
+			return coalescedCount;
+		}
+
+		void deliver(SambaPlayerListener.EventType type, SambaEvent e) {
+			if (type == SambaPlayerListener.EventType.PROGRESS && (minProgressIntervalNs > 0 || minProgressDelta > 0) &&
+					!acceptProgress(e))
+				return;
+
+			if (queue == null) {
+				SambaPlayerEventBus.dispatch(listener, type, e);
 				return;
 			}
 
-			String type = listener.getClass().getSuperclass().getSimpleName();
-			String k;
-			List<Object> ltnList;
+			synchronized (this) {
+				if (!isActive)
+					return;
 
-			for (Method m : listener.getClass().getDeclaredMethods()) {
-				k = String.format("%s:%s", type, m.getName().substring(2));
+				if (policy == OverflowPolicy.COALESCE_LATEST && type == SambaPlayerListener.EventType.PROGRESS &&
+						progressIndex != -1) {
+					SambaEvent pending = queue[progressIndex];
 
-				if (listeners.containsKey(k)) {
-					ltnList = listeners.get(k);
+					// pending reusable events are already private copies
+					if (pending instanceof SambaProgressEvent && e instanceof SambaProgressEvent) {
+						SambaProgressEvent progress = (SambaProgressEvent)e;
+						((SambaProgressEvent)pending).set(progress.getPosition(), progress.getDuration(),
+								progress.getBufferedPosition());
+					}
+					else queue[progressIndex] = e.detach();
 
-					if (ltnList.contains(listener))
-						ltnList.remove(listener);
+					++coalescedCount;
+					return;
+				}
 
-					if (ltnList.size() == 0)
-						listeners.remove(k);
+				while (size == queue.length) {
+					if (policy != OverflowPolicy.BLOCK || !canBlock()) {
+						poll();
+						++droppedCount;
+						break;
+					}
+
+					try {
+						wait();
+					}
+					catch (InterruptedException exp) {
+						Thread.currentThread().interrupt();
+						return;
+					}
+
+					if (!isActive)
+						return;
 				}
-			}
-		}
 
-		public void post(SambaEvent e) {
-			final String[] types = e.getType().toString().toLowerCase().split("_");
-			String t = "";
+				int index = (head + size++) % queue.length;
+
+				queue[index] = e.detach();
 
-			for (String type : types)
-				t += type.substring(0, 1).toUpperCase() + type.substring(1);
+				if (type == SambaPlayerListener.EventType.PROGRESS)
+					progressIndex = index;
 
-			final String k = String.format("%s:%s", e.getType().getClass().getEnclosingClass().getSimpleName(), t);
+				if (isScheduled)
+					return;
 
-			if (!listeners.containsKey(k))
+				isScheduled = true;
+			}
+
+			getExecutor().execute(drain);
+		}
+
+		synchronized void cancel() {
+			isActive = false;
+
+			if (queue == null)
 				return;
 
-			try {
-				// postpone call for lock purposes
-				postponedUnsubscribes = new ArrayList<>();
+			Arrays.fill(queue, null);
+			size = 0;
+			progressIndex = -1;
+			notifyAll();
+		}
 
-                Object listener;
-				Method m;
+		private void drain() {
+			isDeliveryThread.set(true);
 
-				for (ListIterator<Object> iterator = listeners.get(k).listIterator(); iterator.hasNext();) {
-                    listener = iterator.next();
-					m = listener.getClass().getDeclaredMethod("on" + t, SambaEvent.class);
+			try {
+				while (true) {
+					SambaEvent e;
 
-					if (m != null)
-						m.invoke(listener, e);
-                }
+					synchronized (this) {
+						if (size == 0 || !isActive) {
+							isScheduled = false;
+							return;
+						}
 
-				List<Object> unsubs = postponedUnsubscribes;
+						e = poll();
+						notifyAll();
+					}
 
-				// release locker
-				postponedUnsubscribes = null;
+					long start = SambaMetrics.start();
 
-				if (unsubs != null && unsubs.size() > 0) {
-					for (Object ltn : unsubs)
-						unsubscribe(ltn);
+					SambaPlayerEventBus.dispatch(listener, (SambaPlayerListener.EventType)e.getType(), e);
 
-					unsubs.clear();
+					if (mode == DeliveryMode.MAIN)
+						SambaMetrics.endSection(SambaMetrics.Section.EVENT_DELIVERY, listener, start);
 				}
 			}
-			catch (Exception exp) {
-				// it's okay not finding the methods in current class instance (getDeclaredMethod())
-				Log.i(getClass().getSimpleName(), "Error trying to lookup or invoke method.", exp);
+			finally {
+				isDeliveryThread.remove();
+			}
+		}
+
+		private synchronized boolean acceptProgress(SambaEvent e) {
+			long now = System.nanoTime();
+			float position = e instanceof SambaProgressEvent ? ((SambaProgressEvent)e).getPosition() :
+					e.getData() instanceof Number ? ((Number)e.getData()).floatValue() : Float.NaN;
+
+			if (hasDeliveredProgress && (now - lastProgressTime < minProgressIntervalNs ||
+					Math.abs(position - lastProgressPosition) < minProgressDelta))
+				return false;
+
+			hasDeliveredProgress = true;
+			lastProgressTime = now;
+			lastProgressPosition = position;
+			return true;
+		}
+
+		private SambaEvent poll() {
+			SambaEvent e = queue[head];
+
+			queue[head] = null;
+
+			if (progressIndex == head)
+				progressIndex = -1;
+
+			head = (head + 1) % queue.length;
+			--size;
+			return e;
+		}
+
+		private boolean canBlock() {
+			return isDeliveryThread.get() == null && Looper.myLooper() != Looper.getMainLooper();
+		}
+
+		private Executor getExecutor() {
+			switch (mode) {
+				case MAIN: return mainThread;
+				case BACKGROUND: return backgroundLane;
+				default: return SambaExecutor.getExecutor();
 			}
 		}
 	}
+
+	/**
+	 * Runs tasks one at a time on the SDK executor.
+	 */
+	private static class SerialExecutor implements Executor {
+		private final ArrayDeque<Runnable> tasks = new ArrayDeque<>();
+		private Runnable active;
+
+		@Override
+		public synchronized void execute(@NonNull final Runnable task) {
+			tasks.offer(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						task.run();
+					}
+					finally {
+						scheduleNext();
+					}
+				}
+			});
+
+			if (active == null)
+				scheduleNext();
+		}
+
+		private synchronized void scheduleNext() {
+			if ((active = tasks.poll()) != null)
+				SambaExecutor.execute(active);
+		}
+	}
 }
@@ -0,0 +1,223 @@
+package com.sambatech.player.event;
+
+import android.support.annotation.NonNull;
+import android.util.Log;
+
+import com.sambatech.player.model.SambaPlayerError;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Records the events of a player into a compact binary log, to be replayed by {@link SambaEventReplayer}
+ * (e.g. to reproduce issues or to load test listeners without a device).
+ *
+ * Each record holds the event type, the time elapsed since the previous one and its primitive payload
+ * (PROGRESS positions and ERROR values), object payloads (e.g. the LOAD player) are not kept.
+ */
+public class SambaEventRecorder extends SambaPlayerListener {
+
+	static final int MAGIC = 0x53455654; // "SEVT"
+	static final int VERSION = 1;
+
+	private final DataOutputStream out;
+	private SambaPlayerEventBus bus;
+	private long lastTime;
+	private boolean isFailed;
+
+	/**
+	 * @param out Where to write the log (it is not closed by the recorder)
+	 */
+	public SambaEventRecorder(@NonNull OutputStream out) {
+		this.out = new DataOutputStream(new BufferedOutputStream(out));
+	}
+
+	/**
+	 * Starts recording the events of a bus.
+	 * @param bus The bus to record (e.g. <code>SambaPlayer.getEventBus()</code>)
+	 * @throws IOException If the log header cannot be written
+	 */
+	public synchronized void start(@NonNull SambaPlayerEventBus bus) throws IOException {
+		if (this.bus != null)
+			throw new IllegalStateException("Recorder already started.");
+
+		out.writeInt(MAGIC);
+		out.writeByte(VERSION);
+		lastTime = now();
+		this.bus = bus;
+		bus.subscribe(this);
+	}
+
+	/**
+	 * Stops recording, flushing the log.
+	 * @throws IOException If the log cannot be flushed
+	 */
+	public synchronized void stop() throws IOException {
+		if (bus == null)
+			return;
+
+		bus.unsubscribe(this);
+		bus = null;
+		out.flush();
+	}
+
+	private synchronized void record(SambaEvent e) {
+		if (bus == null || isFailed)
+			return;
+
+		SambaPlayerListener.EventType type = (SambaPlayerListener.EventType)e.getType();
+		long time = now();
+
+		try {
+			out.writeByte(type.ordinal());
+			writeVarLong(time - lastTime);
+			lastTime = time;
+
+			switch (type) {
+				case PROGRESS:
+					if (e instanceof SambaProgressEvent) {
+						SambaProgressEvent progress = (SambaProgressEvent)e;
+						out.writeFloat(progress.getPosition());
+						out.writeFloat(progress.getDuration());
+						out.writeFloat(progress.getBufferedPosition());
+					}
+					else {
+						Object[] data = e.getDataAll();
+						float position = data.length > 0 && data[0] instanceof Number ? ((Number)data[0]).floatValue() : 0f;
+						out.writeFloat(position);
+						out.writeFloat(data.length > 1 && data[1] instanceof Number ? ((Number)data[1]).floatValue() : 0f);
+						out.writeFloat(position);
+					}
+					break;
+
+				case ERROR:
+					SambaErrorEvent error = e instanceof SambaErrorEvent ? (SambaErrorEvent)e :
+							new SambaErrorEvent(e.getData() instanceof SambaPlayerError ? (SambaPlayerError)e.getData() : SambaPlayerError.unknown);
+					out.writeByte(error.getError().ordinal());
+					out.writeInt(error.getCode());
+					out.writeByte(error.getSeverity().ordinal());
+					out.writeUTF(error.getMessage() != null ? error.getMessage() : "");
+					break;
+			}
+		}
+		catch (IOException exp) {
+			isFailed = true;
+			Log.w(getClass().getSimpleName(), "Failed to record event, recording stopped.", exp);
+		}
+	}
+
+	private void writeVarLong(long value) throws IOException {
+		while ((value & ~0x7FL) != 0) {
+			out.writeByte((int)(value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+
+		out.writeByte((int)value);
+	}
+
+	private static long now() {
+		return System.nanoTime() / 1000000L;
+	}
+
+	@Override
+	public void onLoad(SambaEvent event) {
+		record(event);
+	}
+
+	@Override
+	public void onDestroy(SambaEvent event) {
+		record(event);
+	}
+
+	@Override
+	public void onStart(SambaEvent event) {
+		record(event);
+	}
+
+	@Override
+	public void onPlay(SambaEvent event) {
+		record(event);
+	}
+
+	@Override
+	public void onPause(SambaEvent event) {
+		record(event);
+	}
+
+	@Override
+	public void onStop(SambaEvent event) {
+		record(event);
+	}
+
+	@Override
+	public void onProgress(SambaEvent event) {
+		record(event);
+	}
+
+	@Override
+	public void onFullscreen(SambaEvent event) {
+		record(event);
+	}
+
+	@Override
+	public void onFullscreenExit(SambaEvent event) {
+		record(event);
+	}
+
+	@Override
+	public void onFinish(SambaEvent event) {
+		record(event);
+	}
+
+	@Override
+	public void onResize(SambaEvent event) {
+		record(event);
+	}
+
+	@Override
+	public void onClick(SambaEvent event) {
+		record(event);
+	}
+
+	@Override
+	public void onError(SambaEvent event) {
+		record(event);
+	}
+
+	@Override
+	public void onPortrait(SambaEvent event) {
+		record(event);
+	}
+
+	@Override
+	public void onLandscape(SambaEvent event) {
+		record(event);
+	}
+
+	@Override
+	public void onCastConnect(SambaEvent event) {
+		record(event);
+	}
+
+	@Override
+	public void onCastDisconnect(SambaEvent event) {
+		record(event);
+	}
+
+	@Override
+	public void onCastPlay(SambaEvent event) {
+		record(event);
+	}
+
+	@Override
+	public void onCastPause(SambaEvent event) {
+		record(event);
+	}
+
+	@Override
+	public void onCastFinish(SambaEvent event) {
+		record(event);
+	}
+}
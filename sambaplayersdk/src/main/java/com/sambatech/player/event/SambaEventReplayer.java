@@ -0,0 +1,165 @@
+package com.sambatech.player.event;
+
+import android.support.annotation.NonNull;
+
+import com.sambatech.player.model.SambaPlayerError;
+import com.sambatech.player.utils.SambaMetrics;
+import com.sambatech.player.utils.SambaMetricsCollector;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+
+/**
+ * Replays a log written by {@link SambaEventRecorder} into a bus.
+ *
+ * Listeners attached to the bus (e.g. plugins attached to a player or to a bus alone, with no device)
+ * receive the recorded events, at the recorded pace or faster. PROGRESS events are posted through a single
+ * reused instance, ERROR events carry the recorded values (see <code>SambaErrorEvent</code>).
+ *
+ * Replayed events stay in the bus: they are not posted to the global <code>SambaEventBus</code> (fan-in
+ * is suspended during the replay, events posted by the player itself meanwhile included).
+ */
+public class SambaEventReplayer {
+
+	/**
+	 * Replays without waiting between events.
+	 */
+	public static final float AS_FAST_AS_POSSIBLE = 0f;
+
+	public static final float REAL_TIME = 1f;
+
+	private static final SambaPlayerListener.EventType[] types = SambaPlayerListener.EventType.values();
+
+	private final DataInputStream in;
+
+	/**
+	 * @param in The log to replay (it is not closed by the replayer)
+	 */
+	public SambaEventReplayer(@NonNull InputStream in) {
+		this.in = new DataInputStream(new BufferedInputStream(in));
+	}
+
+	/**
+	 * Posts every recorded event to a bus, from the calling thread.
+	 *
+	 * @param bus The bus to post events to
+	 * @param speed How much faster than recorded the events should be posted (e.g. <code>REAL_TIME</code>),
+	 *              <code>AS_FAST_AS_POSSIBLE</code> disables waiting
+	 * @return Time spent posting (i.e. running <code>POSTING</code> listeners) in nanoseconds
+	 * @throws IOException If the log is invalid or cannot be read
+	 */
+	public long replay(@NonNull SambaPlayerEventBus bus, float speed) throws IOException {
+		boolean isFanIn = bus.isFanIn();
+
+		bus.setFanIn(false);
+
+		try {
+			return post(bus, speed);
+		}
+		finally {
+			bus.setFanIn(isFanIn);
+		}
+	}
+
+	/**
+	 * Posts every recorded event to a bus, from the calling thread, measuring each listener.
+	 *
+	 * The collector measures the bus during the replay only (the global sink, see <code>SambaMetrics</code>,
+	 * is left untouched): it gets the time spent by each <code>POSTING</code> listener
+	 * (see <code>SambaMetricsCollector.getHandledTime()</code>) and the posting time per event type.
+	 *
+	 * @param bus The bus to post events to
+	 * @param speed How much faster than recorded the events should be posted (e.g. <code>REAL_TIME</code>),
+	 *              <code>AS_FAST_AS_POSSIBLE</code> disables waiting
+	 * @param collector Receives the measurements
+	 * @return Time spent posting (i.e. running <code>POSTING</code> listeners) in nanoseconds
+	 * @throws IOException If the log is invalid or cannot be read
+	 */
+	public long replay(@NonNull SambaPlayerEventBus bus, float speed, @NonNull SambaMetricsCollector collector)
+			throws IOException {
+		SambaMetrics.Sink previous = bus.getMetricsSink();
+
+		bus.setMetricsSink(collector);
+
+		try {
+			return replay(bus, speed);
+		}
+		finally {
+			bus.setMetricsSink(previous);
+		}
+	}
+
+	private long post(SambaPlayerEventBus bus, float speed) throws IOException {
+		if (in.readInt() != SambaEventRecorder.MAGIC || in.readUnsignedByte() != SambaEventRecorder.VERSION)
+			throw new IOException("Invalid event log.");
+
+		SambaProgressEvent progress = new SambaProgressEvent();
+		long postingTime = 0;
+		int ordinal;
+
+		while ((ordinal = in.read()) != -1) {
+			if (ordinal >= types.length)
+				throw new IOException("Invalid event type: " + ordinal);
+
+			SambaPlayerListener.EventType type = types[ordinal];
+			long delay = readVarLong();
+			SambaEvent e;
+
+			switch (type) {
+				case PROGRESS:
+					e = progress.set(in.readFloat(), in.readFloat(), in.readFloat());
+					break;
+
+				case ERROR:
+					SambaPlayerError error = SambaPlayerError.values()[in.readUnsignedByte()];
+					int code = in.readInt();
+					SambaPlayerError.Severity severity = SambaPlayerError.Severity.values()[in.readUnsignedByte()];
+
+					// recorded values, the shared error is left untouched
+					e = new SambaErrorEvent(error, code, in.readUTF(), severity);
+					break;
+
+				default:
+					e = SambaEvent.of(type);
+			}
+
+			if (speed > 0 && delay > 0) {
+				try {
+					Thread.sleep((long)(delay / speed));
+				}
+				catch (InterruptedException exp) {
+					Thread.currentThread().interrupt();
+					throw new InterruptedIOException("Replay interrupted.");
+				}
+			}
+
+			long start = System.nanoTime();
+			bus.post(e);
+			postingTime += System.nanoTime() - start;
+		}
+
+		return postingTime;
+	}
+
+	private long readVarLong() throws IOException {
+		long value = 0;
+
+		for (int shift = 0; shift < 64; shift += 7) {
+			int b = in.read();
+
+			if (b == -1)
+				throw new EOFException("Truncated event log.");
+
+			value |= (long)(b & 0x7F) << shift;
+
+			if ((b & 0x80) == 0)
+				return value;
+		}
+
+		throw new IOException("Invalid event log.");
+	}
+}
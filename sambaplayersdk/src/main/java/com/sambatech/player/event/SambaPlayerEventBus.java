@@ -0,0 +1,324 @@
+package com.sambatech.player.event;
+
+import android.support.annotation.NonNull;
+import android.util.Log;
+
+import com.sambatech.player.event.SambaEventBus.DeliveryMode;
+import com.sambatech.player.event.SambaEventBus.OverflowPolicy;
+import com.sambatech.player.event.SambaEventBus.Subscription;
+import com.sambatech.player.utils.SambaMetrics;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Event bus of a single player, so its listeners (e.g. plugins) only get its own events.
+ * Its events are also posted to the global <code>SambaEventBus</code> (fan-in), unless disabled there.
+ *
+ * Dispatches events through a table indexed by event type.
+ * Handlers are resolved once per listener class (at subscription), posting involves
+ * neither reflection nor string building.
+ *
+ * The table is copy-on-write: (un)subscriptions are serialized and publish a new table,
+ * posting takes no lock and iterates over the table current at the time of the post.
+ * Thus events can be posted from any thread and listeners may (un)subscribe (themselves or others)
+ * while an event is being dispatched, taking effect on the next post.
+ */
+public class SambaPlayerEventBus {
+
+	private static final SambaPlayerListener.EventType[] types = SambaPlayerListener.EventType.values();
+	private static final Subscription[] EMPTY = new Subscription[0];
+	private static final Map<Class<?>, boolean[]> handlersByClass = new HashMap<>();
+
+	private volatile boolean isFanIn;
+	private volatile SambaMetrics.Sink metricsSink;
+	private volatile Subscription[][] subscriptions = new Subscription[types.length][];
+
+	public SambaPlayerEventBus() {
+		this(true);
+	}
+
+	/**
+	 * @param isFanIn whether events should also be posted to the global bus
+	 */
+	SambaPlayerEventBus(boolean isFanIn) {
+		this.isFanIn = isFanIn;
+		Arrays.fill(subscriptions, EMPTY);
+	}
+
+	/**
+	 * @param isFanIn whether events should also be posted to the global bus (e.g. not while replaying)
+	 */
+	void setFanIn(boolean isFanIn) {
+		this.isFanIn = isFanIn;
+	}
+
+	boolean isFanIn() {
+		return isFanIn;
+	}
+
+	/**
+	 * Sets where the measurements of this bus alone go, besides the global sink (see <code>SambaMetrics</code>).
+	 * Only <code>POSTING</code> listeners are measured, as the others run after the post returns.
+	 * @param sink The sink or null to stop measuring
+	 */
+	void setMetricsSink(SambaMetrics.Sink sink) {
+		metricsSink = sink;
+	}
+
+	SambaMetrics.Sink getMetricsSink() {
+		return metricsSink;
+	}
+
+	/**
+	 * Registers an event.
+	 * @param listener listener object
+	 */
+	public void subscribe(Object listener) {
+		add(listener, DeliveryMode.POSTING, 0, OverflowPolicy.DROP_OLDEST);
+	}
+
+	/**
+	 * Registers an event, delivering it through a queue bounded to <code>DEFAULT_QUEUE_CAPACITY</code>
+	 * (except for <code>POSTING</code>) coalescing PROGRESS events.
+	 * @param listener listener object
+	 * @param mode where events are delivered to the listener
+	 * @return the subscription, for monitoring purposes
+	 */
+	public Subscription subscribe(@NonNull SambaPlayerListener listener, @NonNull DeliveryMode mode) {
+		return subscribe(listener, mode, SambaEventBus.DEFAULT_QUEUE_CAPACITY, OverflowPolicy.COALESCE_LATEST);
+	}
+
+	/**
+	 * Registers an event.
+	 * @param listener listener object
+	 * @param mode where events are delivered to the listener
+	 * @param capacity max number of events pending delivery (ignored for <code>POSTING</code>)
+	 * @param policy what to do when the listener queue is full
+	 * @return the subscription, for monitoring purposes
+	 */
+	public Subscription subscribe(@NonNull SambaPlayerListener listener, @NonNull DeliveryMode mode,
+								  int capacity, @NonNull OverflowPolicy policy) {
+		if (mode != DeliveryMode.POSTING && capacity < 1)
+			throw new IllegalArgumentException("Queue capacity must be at least 1.");
+
+		return add(listener, mode, capacity, policy);
+	}
+
+	private Subscription add(Object listener, DeliveryMode mode, int capacity, OverflowPolicy policy) {
+		if (!(listener instanceof SambaPlayerListener)) {
+			Log.w(getClass().getSimpleName(), "Unsupported listener: " + listener);
+			return null;
+		}
+
+		Subscription subscription = new Subscription((SambaPlayerListener)listener, mode, capacity, policy);
+
+		synchronized (this) {
+			boolean[] handlers = getHandlers(listener.getClass());
+			Subscription[][] table = subscriptions.clone();
+
+			for (int i = 0; i < handlers.length; ++i) {
+				if (!handlers[i])
+					continue;
+
+				Subscription[] current = table[i];
+				Subscription[] list = Arrays.copyOf(current, current.length + 1);
+
+				list[current.length] = subscription;
+				table[i] = list;
+			}
+
+			subscriptions = table;
+		}
+
+		return subscription;
+	}
+
+	/**
+	 * Unregisters an event.
+	 * Events pending delivery to the listener are discarded.
+	 * @param listener listener object
+	 */
+	public void unsubscribe(Object listener) {
+		if (!(listener instanceof SambaPlayerListener))
+			return;
+
+		Subscription removed = null;
+
+		synchronized (this) {
+			Subscription[][] table = subscriptions.clone();
+
+			for (int i = 0; i < table.length; ++i) {
+				Subscription[] current = table[i];
+
+				for (int j = 0; j < current.length; ++j) {
+					// removes a single (the oldest) subscription of the listener
+					if (current[j].listener != listener || removed != null && current[j] != removed)
+						continue;
+
+					Subscription[] list = new Subscription[current.length - 1];
+
+					System.arraycopy(current, 0, list, 0, j);
+					System.arraycopy(current, j + 1, list, j, list.length - j);
+					table[i] = list.length > 0 ? list : EMPTY;
+					removed = current[j];
+					break;
+				}
+			}
+
+			subscriptions = table;
+		}
+
+		if (removed != null)
+			removed.cancel();
+	}
+
+	/**
+	 * Triggers an event.
+	 * @param e a particular event
+	 */
+	public void post(SambaEvent e) {
+		if (!(e.getType() instanceof SambaPlayerListener.EventType))
+			return;
+
+		SambaPlayerListener.EventType type = (SambaPlayerListener.EventType)e.getType();
+		SambaMetrics.Sink sink = metricsSink;
+		long start = SambaMetrics.start();
+		long busStart = sink != null ? System.nanoTime() : 0;
+
+		if (sink != null)
+			deliver(type, e, sink);
+		else deliver(type, e);
+
+		if (isFanIn && SambaEventBus.isFanInEnabled())
+			SambaEventBus.fanIn(type, e);
+
+		if (sink != null)
+			sink.onEventPosted(type, System.nanoTime() - busStart);
+
+		SambaMetrics.endPost(type, start);
+	}
+
+	void deliver(SambaPlayerListener.EventType type, SambaEvent e) {
+		for (Subscription subscription : subscriptions[type.ordinal()])
+			subscription.deliver(type, e);
+	}
+
+	private void deliver(SambaPlayerListener.EventType type, SambaEvent e, SambaMetrics.Sink sink) {
+		for (Subscription subscription : subscriptions[type.ordinal()]) {
+			if (subscription.getMode() != DeliveryMode.POSTING) {
+				subscription.deliver(type, e);
+				continue;
+			}
+
+			long start = System.nanoTime();
+
+			subscription.deliver(type, e);
+			sink.onEventHandled(subscription.listener, type, System.nanoTime() - start);
+		}
+	}
+
+	/**
+	 * Retrieves how often the current listeners need PROGRESS events (global ones included, on fan-in).
+	 * @return the shortest interval required in milliseconds (0 for every event), or -1 if there is no listener
+	 */
+	public long getProgressInterval() {
+		long interval = -1;
+
+		for (Subscription subscription : subscriptions[SambaPlayerListener.EventType.PROGRESS.ordinal()]) {
+			long min = subscription.getMinProgressInterval();
+			interval = interval < 0 ? min : Math.min(interval, min);
+		}
+
+		if (isFanIn && SambaEventBus.isFanInEnabled()) {
+			long global = SambaEventBus.getProgressInterval();
+
+			if (global >= 0)
+				interval = interval < 0 ? global : Math.min(interval, global);
+		}
+
+		return interval;
+	}
+
+	/**
+	 * Looks up which events a listener class handles (overrides).
+	 * Results are shared by every bus.
+	 */
+	private static boolean[] getHandlers(Class<?> cls) {
+		synchronized (handlersByClass) {
+			boolean[] handlers = handlersByClass.get(cls);
+
+			if (handlers != null)
+				return handlers;
+
+			handlers = new boolean[types.length];
+
+			for (int i = 0; i < types.length; ++i)
+				handlers[i] = isHandledBy(getHandlerName(types[i]), cls);
+
+			handlersByClass.put(cls, handlers);
+			return handlers;
+		}
+	}
+
+	private static boolean isHandledBy(String name, Class<?> cls) {
+		for (Class<?> c = cls; c != null && c != SambaPlayerListener.class; c = c.getSuperclass()) {
+			try {
+				c.getDeclaredMethod(name, SambaEvent.class);
+				return true;
+			}
+			catch (NoSuchMethodException e) {
+				// keeps looking up
+			}
+		}
+
+		return false;
+	}
+
+	/**
+	 * E.g. FULLSCREEN_EXIT: onFullscreenExit
+	 */
+	private static String getHandlerName(SambaPlayerListener.EventType type) {
+		StringBuilder name = new StringBuilder("on");
+
+		for (String s : type.toString().toLowerCase().split("_"))
+			name.append(Character.toUpperCase(s.charAt(0))).append(s.substring(1));
+
+		return name.toString();
+	}
+
+	static void dispatch(SambaPlayerListener listener, SambaPlayerListener.EventType type, SambaEvent e) {
+		long start = SambaMetrics.start();
+
+		try {
+			switch (type) {
+				case LOAD: listener.onLoad(e); break;
+				case DESTROY: listener.onDestroy(e); break;
+				case START: listener.onStart(e); break;
+				case PLAY: listener.onPlay(e); break;
+				case PAUSE: listener.onPause(e); break;
+				case STOP: listener.onStop(e); break;
+				case PROGRESS: listener.onProgress(e); break;
+				case FULLSCREEN: listener.onFullscreen(e); break;
+				case FULLSCREEN_EXIT: listener.onFullscreenExit(e); break;
+				case FINISH: listener.onFinish(e); break;
+				case RESIZE: listener.onResize(e); break;
+				case CLICK: listener.onClick(e); break;
+				case ERROR: listener.onError(e); break;
+				case PORTRAIT: listener.onPortrait(e); break;
+				case LANDSCAPE: listener.onLandscape(e); break;
+				case CAST_CONNECT: listener.onCastConnect(e); break;
+				case CAST_DISCONNECT: listener.onCastDisconnect(e); break;
+				case CAST_PLAY: listener.onCastPlay(e); break;
+				case CAST_PAUSE: listener.onCastPause(e); break;
+				case CAST_FINISH: listener.onCastFinish(e); break;
+			}
+		}
+		catch (RuntimeException exp) {
+			Log.i(SambaPlayerEventBus.class.getSimpleName(), "Error trying to invoke listener.", exp);
+		}
+
+		SambaMetrics.endHandle(listener, type, start);
+	}
+}
@@ -0,0 +1,94 @@
+package com.sambatech.player.event;
+
+/**
+ * PROGRESS event with primitive payload.
+ *
+ * It is reused by the player on every tick, so listeners must not keep a reference to it
+ * (values should be copied instead). <code>getData()</code> and <code>getDataAll()</code>
+ * are kept for compatibility, but they box the values on each call.
+ */
+public class SambaProgressEvent extends SambaEvent {
+
+	private float position;
+	private float duration;
+	private float bufferedPosition;
+
+	public SambaProgressEvent() {
+		super(SambaPlayerListener.EventType.PROGRESS);
+	}
+
+	public SambaProgressEvent(float position, float duration) {
+		this(position, duration, position);
+	}
+
+	public SambaProgressEvent(float position, float duration, float bufferedPosition) {
+		this();
+		set(position, duration, bufferedPosition);
+	}
+
+	/**
+	 * Updates the event before posting it again (buffered position is assumed to be the playback position).
+	 * @param position Current playback position in seconds
+	 * @param duration Media duration in seconds
+	 * @return The event itself
+	 */
+	public SambaProgressEvent set(float position, float duration) {
+		return set(position, duration, position);
+	}
+
+	/**
+	 * Updates the event before posting it again.
+	 * @param position Current playback position in seconds
+	 * @param duration Media duration in seconds
+	 * @param bufferedPosition Position up to which media is buffered in seconds
+	 * @return The event itself
+	 */
+	public SambaProgressEvent set(float position, float duration, float bufferedPosition) {
+		this.position = position;
+		this.duration = duration;
+		this.bufferedPosition = bufferedPosition;
+		return this;
+	}
+
+	/**
+	 * @return Playback position in seconds
+	 */
+	public float getPosition() {
+		return position;
+	}
+
+	/**
+	 * @return Media duration in seconds
+	 */
+	public float getDuration() {
+		return duration;
+	}
+
+	/**
+	 * @return Position up to which media is buffered in seconds
+	 */
+	public float getBufferedPosition() {
+		return bufferedPosition;
+	}
+
+	/**
+	 * @return Playback position (boxed)
+	 */
+	@Override
+	public Object getData() {
+		return position;
+	}
+
+	/**
+	 * @return Playback position and media duration (boxed)
+	 */
+	@Override
+	public Object[] getDataAll() {
+		return new Object[]{position, duration};
+	}
+
+	@Override
+	SambaEvent detach() {
+		return new SambaProgressEvent(position, duration, bufferedPosition);
+	}
+}
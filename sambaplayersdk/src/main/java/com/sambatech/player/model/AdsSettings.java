@@ -4,6 +4,9 @@ import com.google.ads.interactivemedia.v3.api.AdsRenderingSettings;
 import com.google.ads.interactivemedia.v3.api.ImaSdkFactory;
 import com.google.ads.interactivemedia.v3.api.ImaSdkSettings;
 
+import java.util.ArrayList;
+import java.util.HashSet;
+
 /**
  * @author Leandro Zanol - 7/19/17
  */
@@ -26,4 +29,23 @@ public final class AdsSettings {
 		this.vastLoadTimeout = vastLoadTimeout;
 		this.maxRedirects = maxRedirects;
 	}
+
+	/**
+	 * Copies the settings, rendering included.
+	 *
+	 * @param settings The settings to copy
+	 */
+	public AdsSettings(AdsSettings settings) {
+		this(settings.vastLoadTimeout, settings.maxRedirects);
+		debugMode = settings.debugMode;
+		rendering.setBitrateKbps(settings.rendering.getBitrateKbps());
+		rendering.setEnablePreloading(settings.rendering.getEnablePreloading());
+		rendering.setPlayAdsAfterTime(settings.rendering.getPlayAdsAfterTime());
+
+		if (settings.rendering.getMimeTypes() != null)
+			rendering.setMimeTypes(new ArrayList<>(settings.rendering.getMimeTypes()));
+
+		if (settings.rendering.getUiElements() != null)
+			rendering.setUiElements(new HashSet<>(settings.rendering.getUiElements()));
+	}
 }
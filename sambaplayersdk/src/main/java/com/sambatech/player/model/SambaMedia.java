@@ -1,9 +1,12 @@
 package com.sambatech.player.model;
 
+import android.content.Context;
 import android.graphics.drawable.Drawable;
 import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
 
 import com.google.gson.annotations.Expose;
+import com.sambatech.player.utils.ThumbnailLoader;
 
 import java.util.ArrayList;
 
@@ -20,6 +23,7 @@ public class SambaMedia {
 	public String adUrl;
 	@Expose
 	public @NonNull transient AdsSettings adsSettings = new AdsSettings();
+	/** Filled up by {@link #loadThumb(Context, int, int, ThumbnailLoader.Callback)}. */
 	@Expose
 	public transient Drawable thumb;
 	public float initialTime = 0f;
@@ -33,27 +37,70 @@ public class SambaMedia {
 	public @NonNull CaptionsConfig captionsConfig = new CaptionsConfig();
 	public String drmToken;
 	public String thumbAudioURL;
+	public String thumbURL;
 
 	public SambaMedia() {}
 
+	/**
+	 * Copies a media, its lists and settings are copied as well (not shared between copies).
+	 *
+	 * @param media The media to copy
+	 */
 	public SambaMedia(SambaMedia media) {
 		type = media.type;
 		title = media.title;
 		url = media.url;
 		adUrl = media.adUrl;
-		adsSettings = media.adsSettings;
+		adsSettings = new AdsSettings(media.adsSettings);
 		thumb = media.thumb;
 		initialTime = media.initialTime;
 		duration = media.duration;
 		isLive = media.isLive;
 		isAudioOnly = media.isAudioOnly;
 		isDvr = media.isDvr;
-		backupUrls = media.backupUrls;
-		outputs = media.outputs;
-		captions = media.captions;
+		backupUrls = media.backupUrls.clone();
+		captions = media.captions != null ? new ArrayList<>(media.captions) : null;
+		// immutable
 		captionsConfig = media.captionsConfig;
+
+		if (media.outputs != null) {
+			outputs = new ArrayList<>(media.outputs.size());
+
+			for (Output output : media.outputs)
+				outputs.add(new Output(output));
+		}
 		drmToken = media.drmToken;
 		thumbAudioURL = media.thumbAudioURL;
+		thumbURL = media.thumbURL;
+	}
+
+	/**
+	 * Loads the media thumbnail (see {@link ThumbnailLoader}).
+	 * Must be called from the main thread.
+	 *
+	 * @param context Any context
+	 * @param width Target width in pixels
+	 * @param height Target height in pixels
+	 * @param callback Listener for the loaded thumbnail
+	 * @return A handle to cancel the request or null if the media has no thumbnail
+	 */
+	public @Nullable ThumbnailLoader.Request loadThumb(@NonNull Context context, int width, int height,
+													   @NonNull final ThumbnailLoader.Callback callback) {
+		if (thumbURL == null)
+			return null;
+
+		return ThumbnailLoader.load(context, thumbURL, width, height, new ThumbnailLoader.Callback() {
+			@Override
+			public void onThumbLoaded(@NonNull Drawable thumb) {
+				SambaMedia.this.thumb = thumb;
+				callback.onThumbLoaded(thumb);
+			}
+
+			@Override
+			public void onThumbError(@NonNull Exception e) {
+				callback.onThumbError(e);
+			}
+		});
 	}
 
 	public static class Output {
@@ -61,6 +108,15 @@ public class SambaMedia {
 		public String label;
 		public boolean isDefault = false;
 		public int position;
+
+		public Output() {}
+
+		public Output(Output output) {
+			url = output.url;
+			label = output.label;
+			isDefault = output.isDefault;
+			position = output.position;
+		}
 	}
 
     public static class Caption {
@@ -31,6 +31,7 @@ import com.sambatech.player.offline.model.DownloadState;
 import com.sambatech.player.offline.model.SambaDownloadRequest;
 import com.sambatech.player.offline.model.SambaSubtitle;
 import com.sambatech.player.offline.model.SambaTrack;
+import com.sambatech.player.utils.SambaExecutor;
 import com.sambatech.player.utils.SharedPrefsUtils;
 
 import java.lang.reflect.Type;
@@ -99,7 +100,7 @@ class OfflineUtils {
         };
 
 
-        task.execute(sambaMediaConfig);
+        task.executeOnExecutor(SambaExecutor.getExecutor(), sambaMediaConfig);
 
     }
 
@@ -17,7 +17,9 @@ import com.google.android.exoplayer2.upstream.DefaultHttpDataSourceFactory;
 import com.google.android.exoplayer2.upstream.HttpDataSource;
 import com.google.android.exoplayer2.upstream.cache.Cache;
 import com.google.android.exoplayer2.upstream.cache.CacheDataSource;
+import com.google.android.exoplayer2.upstream.FileDataSourceFactory;
 import com.google.android.exoplayer2.upstream.cache.CacheDataSourceFactory;
+import com.google.android.exoplayer2.upstream.cache.LeastRecentlyUsedCacheEvictor;
 import com.google.android.exoplayer2.upstream.cache.NoOpCacheEvictor;
 import com.google.android.exoplayer2.upstream.cache.SimpleCache;
 import com.google.android.exoplayer2.util.Util;
@@ -34,6 +36,8 @@ public class SambaDownloadManager {
     private static final String DOWNLOAD_ACTION_FILE = "actions";
     private static final String DOWNLOAD_TRACKER_ACTION_FILE = "tracked_actions";
     private static final String DOWNLOAD_CONTENT_DIRECTORY = "downloads";
+    private static final String PREFETCH_CONTENT_DIRECTORY = "sambaplayer_prefetch";
+    private static final long PREFETCH_CACHE_SIZE = 50 * 1024 * 1024;
 
     private static final String SAMBA_PREF = "samba_pref";
 
@@ -41,6 +45,7 @@ public class SambaDownloadManager {
 
     private File downloadDirectory;
     private Cache downloadCache;
+    private Cache prefetchCache;
     private DownloadManager downloadManager;
     private SambaDownloadTracker sambaDownloadTracker;
     private Application applicationInstance;
@@ -146,7 +151,8 @@ public class SambaDownloadManager {
         DefaultDataSourceFactory upstreamFactory = new DefaultDataSourceFactory(
                 applicationInstance.getApplicationContext(), buildHttpDataSourceFactory()
         );
-        return buildReadOnlyCacheDataSource(upstreamFactory, getDownloadCache());
+        // downloads first, then prefetched content (see SambaPrefetcher)
+        return buildReadOnlyCacheDataSource(buildReadOnlyCacheDataSource(upstreamFactory, getPrefetchCache()), getDownloadCache());
     }
 
 
@@ -192,6 +198,17 @@ public class SambaDownloadManager {
         return downloadCache;
     }
 
+    /**
+     * Size-bounded cache (LRU) holding prefetched content.
+     */
+    synchronized Cache getPrefetchCache() {
+        if (prefetchCache == null) {
+            File prefetchContentDirectory = new File(applicationInstance.getCacheDir(), PREFETCH_CONTENT_DIRECTORY);
+            prefetchCache = new SimpleCache(prefetchContentDirectory, new LeastRecentlyUsedCacheEvictor(PREFETCH_CACHE_SIZE));
+        }
+        return prefetchCache;
+    }
+
     private File getDownloadDirectory() {
         if (downloadDirectory == null) {
             downloadDirectory = applicationInstance.getExternalFilesDir(null);
@@ -202,12 +219,14 @@ public class SambaDownloadManager {
         return downloadDirectory;
     }
 
-    private static CacheDataSourceFactory buildReadOnlyCacheDataSource(DefaultDataSourceFactory upstreamFactory, Cache cache) {
+    private static CacheDataSourceFactory buildReadOnlyCacheDataSource(DataSource.Factory upstreamFactory, Cache cache) {
         return new CacheDataSourceFactory(
                 cache,
                 upstreamFactory,
+                new FileDataSourceFactory(),
+                null,
                 CacheDataSource.FLAG_IGNORE_CACHE_ON_ERROR,
-                20 * 1024 * 1024
+                null
         );
     }
 
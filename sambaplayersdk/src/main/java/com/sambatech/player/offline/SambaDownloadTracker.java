@@ -81,6 +81,7 @@ public class SambaDownloadTracker implements DownloadManager.Listener {
     private List<SambaMediaConfig> sambaMedias;
     private final ActionFile actionFile;
     private final Handler actionFileWriteHandler;
+    private final SambaApi api;
 
     SambaDownloadTracker(
             Context context,
@@ -90,6 +91,7 @@ public class SambaDownloadTracker implements DownloadManager.Listener {
         this.context = context.getApplicationContext();
         this.dataSourceFactory = dataSourceFactory;
         this.actionFile = new ActionFile(actionFile);
+        this.api = new SambaApi(this.context, "");
         listeners = new CopyOnWriteArraySet<>();
         trackedDownloadStates = new HashMap<>();
         sambaMedias = OfflineUtils.getPersistedSambaMedias();
@@ -237,7 +239,6 @@ public class SambaDownloadTracker implements DownloadManager.Listener {
 
     void prepareDownload(@NonNull SambaDownloadRequest sambaDownloadRequest, @NonNull SambaDownloadRequestListener requestListener) {
 
-        SambaApi api = new SambaApi(SambaDownloadManager.getInstance().getAppInstance().getApplicationContext(), "");
         api.requestMedia(new SambaMediaRequest(sambaDownloadRequest.getProjectHash(), sambaDownloadRequest.getMediaId()), new SambaApiCallback() {
             @Override
             public void onMediaResponse(SambaMedia media) {
@@ -0,0 +1,378 @@
+package com.sambatech.player.offline;
+
+import android.content.Context;
+import android.net.Uri;
+import android.os.Process;
+import android.support.annotation.NonNull;
+import android.util.Log;
+
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.source.dash.DashSegmentIndex;
+import com.google.android.exoplayer2.source.dash.manifest.AdaptationSet;
+import com.google.android.exoplayer2.source.dash.manifest.DashManifest;
+import com.google.android.exoplayer2.source.dash.manifest.DashManifestParser;
+import com.google.android.exoplayer2.source.dash.manifest.Period;
+import com.google.android.exoplayer2.source.dash.manifest.RangedUri;
+import com.google.android.exoplayer2.source.dash.manifest.Representation;
+import com.google.android.exoplayer2.source.hls.playlist.HlsMasterPlaylist;
+import com.google.android.exoplayer2.source.hls.playlist.HlsMediaPlaylist;
+import com.google.android.exoplayer2.source.hls.playlist.HlsPlaylist;
+import com.google.android.exoplayer2.source.hls.playlist.HlsPlaylistParser;
+import com.google.android.exoplayer2.upstream.DataSource;
+import com.google.android.exoplayer2.upstream.DataSourceInputStream;
+import com.google.android.exoplayer2.upstream.DataSpec;
+import com.google.android.exoplayer2.upstream.ParsingLoadable;
+import com.google.android.exoplayer2.upstream.cache.Cache;
+import com.google.android.exoplayer2.upstream.cache.CacheDataSource;
+import com.google.android.exoplayer2.upstream.cache.CacheUtil;
+import com.google.android.exoplayer2.util.UriUtil;
+import com.sambatech.player.SambaApi;
+import com.sambatech.player.event.SambaApiCallback;
+import com.sambatech.player.model.SambaMedia;
+import com.sambatech.player.model.SambaMediaRequest;
+import com.sambatech.player.utils.SambaExecutor;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Warms up medias that are likely to be played next (e.g. items visible in a feed).
+ *
+ * For each media it requests its data (kept by the media cache, see <code>SambaApi</code>),
+ * its manifest (HLS or DASH) and its first segments, which are stored in a size-bounded cache
+ * read by the player. Progressive medias get their first bytes stored, live medias only their data.
+ *
+ * Segment prefetching requires <code>SambaDownloadManager</code> to be configured.
+ * Every method must be called from the main thread.
+ */
+public class SambaPrefetcher {
+
+    public static final int DEFAULT_SEGMENTS_DURATION = 10;
+
+    private static final String TAG = "SambaPrefetcher";
+    private static final long PROGRESSIVE_LENGTH = 1024 * 1024;
+    // the player starts with the best track under 75% of its initial bandwidth estimate (1 Mbps)
+    private static final int INITIAL_BITRATE = 750000;
+
+    private static final ExecutorService executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(@NonNull final Runnable r) {
+            return new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                    r.run();
+                }
+            }, "SambaPlayer prefetch");
+        }
+    });
+
+    private final SambaApi api;
+    private final Map<String, Job> jobs = new HashMap<>();
+    private long segmentsDurationUs = DEFAULT_SEGMENTS_DURATION * C.MICROS_PER_SECOND;
+
+    /**
+     * @param context Any context
+     */
+    public SambaPrefetcher(@NonNull Context context) {
+        api = new SambaApi(context.getApplicationContext(), null);
+    }
+
+    /**
+     * Sets how much content should be prefetched for each media.
+     *
+     * @param seconds Duration of the first segments to store
+     */
+    public void setSegmentsDuration(int seconds) {
+        segmentsDurationUs = seconds * C.MICROS_PER_SECOND;
+    }
+
+    /**
+     * Prefetches a media (e.g. the predicted next one).
+     * Does nothing if it is already being prefetched.
+     *
+     * @param request The media request
+     */
+    public void prefetch(@NonNull SambaMediaRequest request) {
+        String key = getKey(request);
+
+        if (jobs.containsKey(key))
+            return;
+
+        Job job = new Job(key);
+
+        jobs.put(key, job);
+        api.requestMedia(request, job);
+    }
+
+    /**
+     * Keeps prefetching only the informed medias (e.g. the ones visible in a list):
+     * new ones are prefetched and the others get cancelled.
+     *
+     * @param requests The media requests
+     */
+    public void setVisible(@NonNull SambaMediaRequest... requests) {
+        Set<String> keys = new HashSet<>();
+
+        for (SambaMediaRequest request : requests)
+            keys.add(getKey(request));
+
+        for (Iterator<Map.Entry<String, Job>> it = jobs.entrySet().iterator(); it.hasNext(); ) {
+            Map.Entry<String, Job> kv = it.next();
+
+            if (!keys.contains(kv.getKey())) {
+                kv.getValue().cancel();
+                it.remove();
+            }
+        }
+
+        for (SambaMediaRequest request : requests)
+            prefetch(request);
+    }
+
+    /**
+     * Cancels prefetching a media (content already stored is kept).
+     *
+     * @param request The media request
+     */
+    public void cancel(@NonNull SambaMediaRequest request) {
+        Job job = jobs.remove(getKey(request));
+
+        if (job != null)
+            job.cancel();
+    }
+
+    public void cancelAll() {
+        for (Job job : jobs.values())
+            job.cancel();
+
+        jobs.clear();
+    }
+
+    private static String getKey(SambaMediaRequest request) {
+        return request.projectHash + '/' + (request.mediaId != null ? request.mediaId : request.liveChannelId);
+    }
+
+    /**
+     * Prefetching of a single media, from its data request to its segments.
+     */
+    private class Job extends SambaApiCallback implements Runnable {
+        private final String key;
+        private final AtomicBoolean isCancelled = new AtomicBoolean();
+        private Future<?> future;
+        private SambaMedia media;
+
+        Job(String key) {
+            this.key = key;
+        }
+
+        @Override
+        public void onMediaResponse(SambaMedia media) {
+            if (isCancelled.get())
+                return;
+
+            if (media.isLive || media.url == null || !SambaDownloadManager.getInstance().isConfigured()) {
+                finish();
+                return;
+            }
+
+            this.media = media;
+            future = executor.submit(this);
+        }
+
+        @Override
+        public void onMediaResponseError(Exception e, SambaMediaRequest request) {
+            finish();
+        }
+
+        void cancel() {
+            isCancelled.set(true);
+
+            if (future != null)
+                future.cancel(false);
+        }
+
+        @Override
+        public void run() {
+            try {
+                SambaDownloadManager manager = SambaDownloadManager.getInstance();
+                Cache cache = manager.getPrefetchCache();
+                DataSource upstream = manager.buildHttpDataSourceFactory().createDataSource();
+                Uri uri = Uri.parse(media.url);
+
+                switch (media.type) {
+                    case "hls":
+                        prefetchHls(uri, cache, upstream);
+                        break;
+
+                    case "dash":
+                        prefetchDash(uri, cache, upstream);
+                        break;
+
+                    default:
+                        store(new DataSpec(uri, 0, PROGRESSIVE_LENGTH, null), cache, upstream);
+                }
+            }
+            catch (InterruptedException e) {
+                // cancelled
+            }
+            catch (Exception e) {
+                Log.w(TAG, "Failed to prefetch media: " + media.url, e);
+            }
+            finally {
+                // done, so that it can be prefetched again (e.g. evicted from cache)
+                SambaExecutor.postOnMainThread(new Runnable() {
+                    @Override
+                    public void run() {
+                        finish();
+                    }
+                });
+            }
+        }
+
+        /**
+         * Releases the job, unless it has been replaced (e.g. cancelled and prefetched again).
+         * Must be called on the main thread.
+         */
+        private void finish() {
+            if (jobs.get(key) == this)
+                jobs.remove(key);
+        }
+
+        private void prefetchHls(Uri uri, Cache cache, DataSource upstream) throws IOException, InterruptedException {
+            HlsPlaylist playlist = load(uri, new HlsPlaylistParser(), cache, upstream);
+
+            if (playlist instanceof HlsMasterPlaylist) {
+                List<HlsMasterPlaylist.HlsUrl> variants = ((HlsMasterPlaylist) playlist).variants;
+
+                if (variants.isEmpty())
+                    return;
+
+                HlsMasterPlaylist.HlsUrl variant = variants.get(0);
+
+                for (HlsMasterPlaylist.HlsUrl v : variants)
+                    if (isBetterStart(v.format.bitrate, variant.format.bitrate))
+                        variant = v;
+
+                playlist = load(UriUtil.resolveToUri(playlist.baseUri, variant.url), new HlsPlaylistParser(), cache, upstream);
+            }
+
+            HlsMediaPlaylist mediaPlaylist = (HlsMediaPlaylist) playlist;
+            long durationUs = 0;
+
+            for (HlsMediaPlaylist.Segment segment : mediaPlaylist.segments) {
+                if (durationUs >= segmentsDurationUs)
+                    break;
+
+                store(new DataSpec(UriUtil.resolveToUri(mediaPlaylist.baseUri, segment.url),
+                        segment.byterangeOffset, segment.byterangeLength, null), cache, upstream);
+
+                durationUs += segment.durationUs;
+            }
+        }
+
+        private void prefetchDash(Uri uri, Cache cache, DataSource upstream) throws IOException, InterruptedException {
+            DashManifest manifest = load(uri, new DashManifestParser(), cache, upstream);
+
+            if (manifest.dynamic || manifest.getPeriodCount() == 0)
+                return;
+
+            Period period = manifest.getPeriod(0);
+            long periodDurationUs = manifest.getPeriodDurationUs(0);
+
+            for (AdaptationSet adaptationSet : period.adaptationSets) {
+                if (adaptationSet.type != C.TRACK_TYPE_VIDEO && adaptationSet.type != C.TRACK_TYPE_AUDIO ||
+                        adaptationSet.representations.isEmpty())
+                    continue;
+
+                Representation representation = adaptationSet.representations.get(0);
+
+                for (Representation r : adaptationSet.representations)
+                    if (isBetterStart(r.format.bitrate, representation.format.bitrate))
+                        representation = r;
+
+                prefetchRepresentation(representation, periodDurationUs, cache, upstream);
+            }
+        }
+
+        private void prefetchRepresentation(Representation representation, long periodDurationUs, Cache cache,
+                                            DataSource upstream) throws IOException, InterruptedException {
+            String cacheKey = representation.getCacheKey();
+            RangedUri initUri = representation.getInitializationUri();
+            RangedUri indexUri = representation.getIndexUri();
+
+            if (initUri != null)
+                store(toDataSpec(initUri, representation.baseUrl, cacheKey), cache, upstream);
+
+            if (indexUri != null)
+                store(toDataSpec(indexUri, representation.baseUrl, cacheKey), cache, upstream);
+
+            DashSegmentIndex index = representation.getIndex();
+
+            // single segment representations (indexed inside the media) are only warmed up
+            if (index == null)
+                return;
+
+            long first = index.getFirstSegmentNum();
+            int count = index.getSegmentCount(periodDurationUs);
+            long durationUs = 0;
+
+            for (long n = first; (count == DashSegmentIndex.INDEX_UNBOUNDED || n < first + count) &&
+                    durationUs < segmentsDurationUs; ++n) {
+                store(toDataSpec(index.getSegmentUrl(n), representation.baseUrl, cacheKey), cache, upstream);
+                durationUs += index.getDurationUs(n, periodDurationUs);
+            }
+        }
+
+        private DataSpec toDataSpec(RangedUri rangedUri, String baseUrl, String cacheKey) {
+            return new DataSpec(rangedUri.resolveUri(baseUrl), rangedUri.start, rangedUri.length, cacheKey);
+        }
+
+        /**
+         * Stores content and parses it back from cache.
+         */
+        private <T> T load(Uri uri, ParsingLoadable.Parser<T> parser, Cache cache, DataSource upstream)
+                throws IOException, InterruptedException {
+            DataSpec dataSpec = new DataSpec(uri);
+
+            store(dataSpec, cache, upstream);
+
+            InputStream in = new DataSourceInputStream(new CacheDataSource(cache, upstream), dataSpec);
+
+            try {
+                return parser.parse(uri, in);
+            }
+            finally {
+                in.close();
+            }
+        }
+
+        private void store(DataSpec dataSpec, Cache cache, DataSource upstream) throws IOException, InterruptedException {
+            if (isCancelled.get())
+                throw new InterruptedException();
+
+            CacheUtil.cache(dataSpec, cache, upstream, null, isCancelled);
+        }
+
+        /**
+         * Whether a track (bitrate) is closer to the one the player is likely to start with.
+         */
+        private boolean isBetterStart(int bitrate, int currentBitrate) {
+            if (currentBitrate > INITIAL_BITRATE)
+                return bitrate < currentBitrate;
+
+            return bitrate > currentBitrate && bitrate <= INITIAL_BITRATE;
+        }
+    }
+}
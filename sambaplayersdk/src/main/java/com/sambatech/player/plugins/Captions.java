@@ -12,8 +12,9 @@ import com.sambatech.player.R;
 import com.sambatech.player.SambaPlayer;
 import com.sambatech.player.adapter.CaptionsSheetAdapter;
 import com.sambatech.player.event.SambaEvent;
-import com.sambatech.player.event.SambaEventBus;
+import com.sambatech.player.event.SambaPlayerEventBus;
 import com.sambatech.player.event.SambaPlayerListener;
+import com.sambatech.player.event.SambaProgressEvent;
 import com.sambatech.player.model.SambaMedia;
 import com.sambatech.player.utils.Helpers;
 
@@ -28,7 +29,7 @@ import java.util.HashMap;
 public final class Captions extends SambaPlayerListener implements Plugin {
 
 	private SubtitleView _subtitleLayer;
-	private SambaPlayer _player;
+	private SambaPlayerEventBus _eventBus;
 	private @NonNull ArrayList<SambaMedia.Caption> _captionsRequest = new ArrayList<>();
 	private SambaMedia.CaptionsConfig _config;
 	private HashMap<Integer, Caption[]> _captionsMap;
@@ -92,24 +93,28 @@ public final class Captions extends SambaPlayerListener implements Plugin {
 	// on data available
 	@Override
 	public void onLoad(@NonNull SambaPlayer player) {
-		_player = player;
-
-		SambaMedia media = player.getMedia();
-
 		try {
-			if (media == null || media.captions == null
-					|| media.captions.size() == 0) return;
-
-			_captionsRequest = media.captions;
-			_config = media.captionsConfig;
-
-			SambaEventBus.subscribe(this);
+			attach(player.getMedia(), player.getEventBus());
 		}
 		finally {
-			PluginManager.getInstance().notifyPluginLoaded(this);
+			player.getPluginManager().notifyPluginLoaded(this);
 		}
 	}
 
+	/**
+	 * Follows the media playback from its events alone, no player required (e.g. a replayed session).
+	 */
+	void attach(SambaMedia media, @NonNull SambaPlayerEventBus eventBus) {
+		if (media == null || media.captions == null
+				|| media.captions.size() == 0) return;
+
+		_captionsRequest = media.captions;
+		_config = media.captionsConfig;
+		_eventBus = eventBus;
+
+		eventBus.subscribe(this);
+	}
+
 	// on view available
 	@Override
 	public void onInternalPlayerCreated(@NonNull SimpleExoPlayerView internalPlayer) {
@@ -145,14 +150,16 @@ public final class Captions extends SambaPlayerListener implements Plugin {
 
 	@Override
 	public void onDestroy() {
-		SambaEventBus.unsubscribe(this);
+		if (_eventBus != null)
+			_eventBus.unsubscribe(this);
 	}
 
 	@Override
 	public void onProgress(SambaEvent event) {
 		if (_subtitleLayer == null || !_parsed) return;
 
-		final float time = _player.getCurrentTime();
+		final float time = event instanceof SambaProgressEvent ? ((SambaProgressEvent)event).getPosition()
+				: (float)event.getDataAll()[0];
 		final int m = (int)(time/60f);
 
 		if (!_captionsMap.containsKey(m)) return;
@@ -19,6 +19,20 @@ public class DrmRequest {
 		this.licenseUrl = licenseUrl;
 	}
 
+	/**
+	 * Creates an independent copy of a DRM request (params and headers are not shared).
+	 *
+	 * @param drmRequest The DRM request to copy from
+	 */
+	public DrmRequest(DrmRequest drmRequest) {
+		licenseUrl = drmRequest.licenseUrl;
+		urlParams = new HashMap<>(drmRequest.urlParams);
+		headerParams = new HashMap<>(drmRequest.headerParams);
+		token = drmRequest.token;
+		provider = drmRequest.provider;
+		drmOfflinePayload = drmRequest.drmOfflinePayload;
+	}
+
 	public String getLicenseUrl() {
 		String params = licenseUrl.contains("?") ? "" : "?";
 		String sep = "";
@@ -402,7 +402,7 @@ public class ImaWrapper implements Plugin {
 		SambaMedia media = player.getMedia();
 
 		if (media.adUrl == null || media.adUrl.isEmpty()) {
-			PluginManager.getInstance().notifyPluginLoaded(this);
+			player.getPluginManager().notifyPluginLoaded(this);
 			return;
 		}
 
@@ -442,7 +442,7 @@ public class ImaWrapper implements Plugin {
 		};
 
 		SambaEventBus.subscribe(playerListener);
-		PluginManager.getInstance().notifyPluginLoaded(this);
+		player.getPluginManager().notifyPluginLoaded(this);
 	}
 
 	public void onInternalPlayerCreated(@NonNull SimpleVideoPlayer internalPlayer) {}
@@ -4,56 +4,81 @@ import android.support.annotation.NonNull;
 
 import com.google.android.exoplayer2.ui.SimpleExoPlayerView;
 import com.sambatech.player.SambaPlayer;
+import com.sambatech.player.utils.SambaMetrics;
 
 /**
  * Responsible for managing plugins lifecycle.
+ * Each player owns one, so plugins and their state are never shared between players.
  *
  * @author Leandro Zanol - 12/01/2016
  */
 public class PluginManager implements Plugin {
 
-    private static PluginManager instance = new PluginManager();
-
+    private final SambaPlayer player;
     private Plugin[] plugins;
-    private SambaPlayer player;
     private int pluginsLoaded;
     private boolean isLoaded;
     private boolean pendingPlay;
 
-    private PluginManager() {
-    }
-
-    public static PluginManager getInstance() {
-        return instance;
+    /**
+     * @param player The player owning the plugins
+     */
+    public PluginManager(@NonNull SambaPlayer player) {
+        this.player = player;
     }
 
     public void onLoad(@NonNull SambaPlayer player) {
-        this.player = player;
+        if (player != this.player)
+            throw new IllegalArgumentException("Plugins belong to another player.");
+
+        // previous media plugins must not outlive it
+        onDestroy();
         pluginsLoaded = 0;
+        isLoaded = false;
 
+        // stats reported before tracking ends the session
         plugins = new Plugin[]{
+                new QoeCollector(),
                 TrackingFactory.getInstance(this.player.getMedia().isLive),
                 new Captions()
         };
 
-        for (Plugin plugin : plugins)
+        for (Plugin plugin : plugins) {
+            long start = SambaMetrics.start();
+
             plugin.onLoad(player);
+            SambaMetrics.endSection(SambaMetrics.Section.PLUGIN_LOAD, plugin, start);
+        }
     }
 
     public void onInternalPlayerCreated(@NonNull SimpleExoPlayerView internalPlayer) {
         if (plugins == null) return;
 
-        for (Plugin plugin : plugins)
+        for (Plugin plugin : plugins) {
+            long start = SambaMetrics.start();
+
             plugin.onInternalPlayerCreated(internalPlayer);
+            SambaMetrics.endSection(SambaMetrics.Section.PLUGIN_INTERNAL_PLAYER_CREATED, plugin, start);
+        }
     }
 
     public void onDestroy() {
         if (plugins == null) return;
 
-        for (Plugin plugin : plugins)
-            plugin.onDestroy();
+        Plugin[] destroyed = plugins;
 
         plugins = null;
+
+        for (Plugin plugin : destroyed)
+            plugin.onDestroy();
+    }
+
+    /**
+     * @return Quality of experience stats of this player current session or null if no media is loaded
+     */
+    public QoeStats getQoeStats() {
+        QoeCollector collector = (QoeCollector) getPlugin(QoeCollector.class);
+        return collector != null ? collector.getSnapshot() : null;
     }
 
     public boolean isLoaded() {
@@ -65,6 +90,8 @@ public class PluginManager implements Plugin {
     }
 
     public Plugin getPlugin(Class PluginRef) {
+        if (plugins == null) return null;
+
         for (Plugin plugin : plugins)
             if (plugin.getClass() == PluginRef)
                 return plugin;
@@ -76,6 +103,10 @@ public class PluginManager implements Plugin {
      * Notifies plugin load to player.
      */
     void notifyPluginLoaded(Plugin plugin) {
+        // e.g. late notification from a previous media plugin
+        if (!isCurrent(plugin))
+            return;
+
         if (++pluginsLoaded >= plugins.length) {
             isLoaded = true;
 
@@ -85,4 +116,14 @@ public class PluginManager implements Plugin {
             }
         }
     }
+
+    private boolean isCurrent(Plugin plugin) {
+        if (plugins == null) return false;
+
+        for (Plugin p : plugins)
+            if (p == plugin)
+                return true;
+
+        return false;
+    }
 }
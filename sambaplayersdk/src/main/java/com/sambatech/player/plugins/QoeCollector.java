@@ -0,0 +1,276 @@
+package com.sambatech.player.plugins;
+
+import android.os.SystemClock;
+import android.support.annotation.NonNull;
+import android.view.Surface;
+
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.Format;
+import com.google.android.exoplayer2.Player;
+import com.google.android.exoplayer2.SimpleExoPlayer;
+import com.google.android.exoplayer2.analytics.DefaultAnalyticsListener;
+import com.google.android.exoplayer2.source.MediaSourceEventListener;
+import com.google.android.exoplayer2.ui.SimpleExoPlayerView;
+import com.sambatech.player.SambaPlayer;
+import com.sambatech.player.event.SambaEvent;
+import com.sambatech.player.event.SambaPlayerEventBus;
+import com.sambatech.player.event.SambaPlayerListener;
+import com.sambatech.player.model.SambaMediaConfig;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Plugin collecting quality of experience stats of the playback session: startup time, rebuffers,
+ * average bitrate, bitrate switches and dropped frames.
+ *
+ * Stats come from the internal player analytics and the player events, kept in plain counters
+ * (main thread). They are reported to the tracking sinks (<code>QOE</code> event) when the session ends.
+ *
+ * It is the only listener of the internal player analytics, rebuffers and bitrate switches are also
+ * reported to other plugins through {@link Listener} (e.g. tracking).
+ *
+ * @see PluginManager#getQoeStats()
+ */
+public class QoeCollector extends DefaultAnalyticsListener implements Plugin {
+
+    /**
+     * Playback quality changes, notified on the main thread.
+     */
+    interface Listener {
+        /**
+         * @param duration Stall duration in milliseconds
+         */
+        void onRebuffer(long duration);
+
+        /**
+         * @param bitrate New video bitrate in bits per second
+         */
+        void onBitrateSwitch(int bitrate);
+    }
+
+    private final List<Listener> listeners = new ArrayList<>();
+    private SambaMediaConfig media;
+    private SambaPlayerEventBus eventBus;
+    private SimpleExoPlayer player;
+    private boolean hasStarted;
+
+    // internal player state
+    private boolean playWhenReady;
+    private int playbackState = Player.STATE_IDLE;
+    private boolean hasBeenReady;
+    private boolean isSeeking;
+    private int bitrate = Format.NO_VALUE;
+
+    // session counters (times from SystemClock.elapsedRealtime())
+    private long requestTime = -1;
+    private long startupTime = -1;
+    private int rebufferCount;
+    private long rebufferDuration;
+    private long rebufferStart = -1;
+    private long playingTime;
+    private long playingSince = -1;
+    private long bitrateTime;
+    private long bitrateSum;
+    private int bitrateSwitchCount;
+    private int droppedFrames;
+
+    private SambaPlayerListener playerListener = new SambaPlayerListener() {
+        @Override
+        public void onStart(SambaEvent event) {
+            hasStarted = true;
+
+            // no frames to render
+            if (media.isAudioOnly && startupTime < 0 && requestTime >= 0)
+                startupTime = SystemClock.elapsedRealtime() - requestTime;
+        }
+    };
+
+    public void onLoad(@NonNull SambaPlayer player) {
+        media = (SambaMediaConfig) player.getMedia();
+        eventBus = player.getEventBus();
+        eventBus.subscribe(playerListener);
+
+        player.getPluginManager().notifyPluginLoaded(this);
+    }
+
+    public void onInternalPlayerCreated(@NonNull SimpleExoPlayerView internalPlayer) {
+        Player p = internalPlayer.getPlayer();
+
+        if (p == player || !(p instanceof SimpleExoPlayer))
+            return;
+
+        // e.g. recreated after an error, counters go on
+        detach(SystemClock.elapsedRealtime());
+        player = (SimpleExoPlayer) p;
+        player.addAnalyticsListener(this);
+    }
+
+    public void onDestroy() {
+        if (eventBus != null)
+            eventBus.unsubscribe(playerListener);
+
+        detach(SystemClock.elapsedRealtime());
+
+        // before the tracking plugins end the session
+        if (hasStarted) {
+            TrackingDispatcher.getInstance().dispatch(TrackingEvent.qoe(media, getSnapshot()));
+            hasStarted = false;
+        }
+    }
+
+    void addListener(@NonNull Listener listener) {
+        listeners.add(listener);
+    }
+
+    void removeListener(@NonNull Listener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Must be called on the main thread.
+     * @return The stats of the session so far
+     */
+    public @NonNull QoeStats getSnapshot() {
+        return getSnapshot(SystemClock.elapsedRealtime());
+    }
+
+    /**
+     * @param now Current time from <code>SystemClock.elapsedRealtime()</code>
+     */
+    @NonNull QoeStats getSnapshot(long now) {
+        long playing = playingTime;
+        long weighted = bitrateSum;
+        long weightedTime = bitrateTime;
+
+        // ongoing intervals
+        if (playingSince >= 0) {
+            playing += now - playingSince;
+
+            if (bitrate != Format.NO_VALUE) {
+                weighted += (long) bitrate * (now - playingSince);
+                weightedTime += now - playingSince;
+            }
+        }
+
+        return new QoeStats(startupTime, rebufferCount,
+                rebufferDuration + (rebufferStart >= 0 ? now - rebufferStart : 0), playing,
+                weightedTime > 0 ? weighted / weightedTime : bitrate, bitrateSwitchCount, droppedFrames);
+    }
+
+    @Override
+    public void onPlayerStateChanged(EventTime eventTime, boolean playWhenReady, int playbackState) {
+        long now = eventTime.realtimeMs;
+
+        if (playWhenReady && requestTime < 0)
+            requestTime = now;
+
+        switch (playbackState) {
+            case Player.STATE_BUFFERING:
+                // stalls only, not initial loads or seeks
+                if (hasBeenReady && !isSeeking && rebufferStart < 0) {
+                    rebufferStart = now;
+                    ++rebufferCount;
+                }
+                break;
+
+            case Player.STATE_READY:
+                hasBeenReady = true;
+                isSeeking = false;
+                endRebuffer(now);
+                break;
+
+            default:
+                isSeeking = false;
+                endRebuffer(now);
+        }
+
+        this.playWhenReady = playWhenReady;
+        this.playbackState = playbackState;
+        updatePlaying(now);
+    }
+
+    @Override
+    public void onSeekStarted(EventTime eventTime) {
+        isSeeking = true;
+    }
+
+    @Override
+    public void onRenderedFirstFrame(EventTime eventTime, Surface surface) {
+        if (startupTime < 0 && requestTime >= 0)
+            startupTime = eventTime.realtimeMs - requestTime;
+    }
+
+    @Override
+    public void onDownstreamFormatChanged(EventTime eventTime, MediaSourceEventListener.MediaLoadData mediaLoadData) {
+        Format format = mediaLoadData.trackFormat;
+
+        if (format == null || format.bitrate == Format.NO_VALUE || format.bitrate == bitrate ||
+                (mediaLoadData.trackType != C.TRACK_TYPE_VIDEO && mediaLoadData.trackType != C.TRACK_TYPE_DEFAULT))
+            return;
+
+        boolean isSwitch = bitrate != Format.NO_VALUE;
+
+        // closes the interval played with the previous bitrate
+        updatePlaying(eventTime.realtimeMs);
+        bitrate = format.bitrate;
+
+        // the first one is the initial selection
+        if (isSwitch) {
+            ++bitrateSwitchCount;
+
+            for (Listener listener : listeners)
+                listener.onBitrateSwitch(bitrate);
+        }
+    }
+
+    @Override
+    public void onDroppedVideoFrames(EventTime eventTime, int droppedFrames, long elapsedMs) {
+        this.droppedFrames += droppedFrames;
+    }
+
+    private void detach(long now) {
+        if (player == null)
+            return;
+
+        player.removeAnalyticsListener(this);
+        player = null;
+        playWhenReady = false;
+        playbackState = Player.STATE_IDLE;
+        hasBeenReady = false;
+        isSeeking = false;
+        endRebuffer(now);
+        updatePlaying(now);
+    }
+
+    private void endRebuffer(long now) {
+        if (rebufferStart < 0)
+            return;
+
+        long duration = now - rebufferStart;
+
+        rebufferDuration += duration;
+        rebufferStart = -1;
+
+        for (Listener listener : listeners)
+            listener.onRebuffer(duration);
+    }
+
+    /**
+     * Accounts the time played since the last update, restarts timing if still playing.
+     */
+    private void updatePlaying(long now) {
+        if (playingSince >= 0) {
+            long elapsed = now - playingSince;
+
+            playingTime += elapsed;
+
+            if (bitrate != Format.NO_VALUE) {
+                bitrateSum += (long) bitrate * elapsed;
+                bitrateTime += elapsed;
+            }
+        }
+
+        playingSince = playWhenReady && playbackState == Player.STATE_READY ? now : -1;
+    }
+}
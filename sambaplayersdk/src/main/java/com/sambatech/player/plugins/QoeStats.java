@@ -0,0 +1,50 @@
+package com.sambatech.player.plugins;
+
+import java.util.Locale;
+
+/**
+ * Quality of experience stats of a playback session (snapshot).
+ *
+ * @see QoeCollector
+ */
+public final class QoeStats {
+
+    /** Time to first frame (first sound for audio) since playback was requested in milliseconds, -1 if not started. */
+    public final long startupTime;
+    /** Stalls after playback started (seeks excluded). */
+    public final int rebufferCount;
+    /** Time stalled in milliseconds. */
+    public final long rebufferDuration;
+    /** Time playing in milliseconds. */
+    public final long playingTime;
+    /** Playing time weighted video bitrate in bits per second, -1 if unknown. */
+    public final long averageBitrate;
+    /** Adaptive streaming video quality switches. */
+    public final int bitrateSwitchCount;
+    public final int droppedFrames;
+
+    QoeStats(long startupTime, int rebufferCount, long rebufferDuration, long playingTime,
+             long averageBitrate, int bitrateSwitchCount, int droppedFrames) {
+        this.startupTime = startupTime;
+        this.rebufferCount = rebufferCount;
+        this.rebufferDuration = rebufferDuration;
+        this.playingTime = playingTime;
+        this.averageBitrate = averageBitrate;
+        this.bitrateSwitchCount = bitrateSwitchCount;
+        this.droppedFrames = droppedFrames;
+    }
+
+    /**
+     * @return Time stalled relative to the total (stalled and playing), 0-1
+     */
+    public float getRebufferRatio() {
+        long total = rebufferDuration + playingTime;
+        return total > 0 ? (float) rebufferDuration / total : 0f;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.US, "startup=%dms rebuffers=%d/%dms playing=%dms bitrate=%d switches=%d dropped=%d",
+                startupTime, rebufferCount, rebufferDuration, playingTime, averageBitrate, bitrateSwitchCount, droppedFrames);
+    }
+}
@@ -0,0 +1,189 @@
+package com.sambatech.player.plugins;
+
+import android.content.Context;
+import android.support.annotation.NonNull;
+import android.text.TextUtils;
+import android.util.Log;
+
+import com.sambatech.player.R;
+import com.sambatech.player.model.SambaMediaConfig;
+import com.sambatech.player.utils.SambaHttpClient;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Sends live events to STTM2: loads, plays, pauses, heartbeats ("online") and completions,
+ * one hit per event.
+ */
+class Sttm2Sink implements TrackingSink {
+
+    static final String CHANNEL_STTM2 = "sttm2";
+
+    private static final String EVENT_LOAD = "lo";
+    private static final String EVENT_PLAY = "pl";
+    private static final String EVENT_PAUSE = "pa";
+    private static final String EVENT_ONLINE = "on";
+    private static final String EVENT_COMPLETE = "co";
+
+    private static final String ORIGIN_SDK_ANDROID = "player.sambatech.sdk.android";
+
+    private final TrackingSpool spool;
+    private final String endpoint;
+    // sessions loaded, accessed by the dispatcher thread only
+    private final Map<String, Session> sessions = new HashMap<>();
+
+    /**
+     * Requests the STTM2 token and then the hit URL.
+     */
+    private static final TrackingSpool.Sender sttm2Sender = new TrackingSpool.Sender() {
+        @Override
+        public void send(@NonNull TrackingSpool.Hit hit) throws IOException {
+            Sttm2TokenCache tokens = Sttm2TokenCache.getInstance();
+            String jwtUrl;
+            Sttm2TokenCache.Token sttm2;
+            String query;
+
+            try {
+                JSONObject payload = new JSONObject(hit.payload);
+
+                jwtUrl = payload.getString("jwt");
+                sttm2 = tokens.get(jwtUrl, payload.getString("lid"), payload.optString("url", null));
+                query = payload.getString("query");
+            }
+            catch (JSONException e) {
+                throw new IllegalArgumentException("Invalid STTM2 hit", e);
+            }
+
+            if (sttm2 != null && !TextUtils.isEmpty(sttm2.key) && !TextUtils.isEmpty(sttm2.url)) {
+                String sttmUrl = String.format("%s?%s", sttm2.url, query);
+
+                Map<String, String> headers = new HashMap<>();
+
+                headers.put("Authorization", "Bearer " + sttm2.key);
+                headers.put("User-Agent", System.getProperty("http.agent"));
+
+                try {
+                    SambaHttpClient.get(sttmUrl, headers);
+                }
+                catch (IOException e) {
+                    // e.g. revoked, the retry gets a new one
+                    tokens.invalidate(jwtUrl, sttm2);
+                    throw e;
+                }
+            }
+        }
+    };
+
+    Sttm2Sink(@NonNull Context context) {
+        this(TrackingSpool.getInstance(context), context.getString(R.string.player_endpoint_prod));
+    }
+
+    /**
+     * @param endpoint Player API base URL (requests the tokens)
+     */
+    Sttm2Sink(@NonNull TrackingSpool spool, @NonNull String endpoint) {
+        this.spool = spool;
+        this.endpoint = endpoint;
+        spool.setSender(CHANNEL_STTM2, sttm2Sender);
+    }
+
+    @Override
+    public void onEvents(@NonNull List<TrackingEvent> events) {
+        boolean hasHits = false;
+
+        for (TrackingEvent event : events) {
+            SambaMediaConfig media = event.media;
+
+            if (!media.isLive || media.sttmUrl == null || media.projectHash == null || media.id == null)
+                continue;
+
+            if (event.type == TrackingEvent.Type.END) {
+                sessions.remove(event.sessionId);
+                continue;
+            }
+
+            Session session = sessions.get(event.sessionId);
+
+            if (session == null)
+                sessions.put(event.sessionId, session = new Session(event.time));
+
+            String hit;
+
+            switch (event.type) {
+                case LOAD:
+                    // ready by the first hit
+                    Sttm2TokenCache.getInstance().prefetch(getSttm2RequestUrl(media), media.id, media.sttm2Url);
+                    hit = EVENT_LOAD;
+                    break;
+
+                case PLAY:
+                    hit = EVENT_ONLINE + "," + EVENT_PLAY;
+                    break;
+
+                case PAUSE:
+                    hit = EVENT_PAUSE;
+                    break;
+
+                case HEARTBEAT:
+                    hit = EVENT_ONLINE;
+                    break;
+
+                case COMPLETE:
+                    hit = EVENT_COMPLETE;
+                    break;
+
+                default:
+                    continue;
+            }
+
+            String hitId = session.nextHitId();
+
+            try {
+                JSONObject payload = new JSONObject();
+
+                payload.put("jwt", getSttm2RequestUrl(media));
+                payload.put("lid", media.id);
+                payload.put("url", media.sttm2Url);
+                payload.put("query", String.format("event=%s&cid=%s&pid=%s&lid=%s&cat=%s&org=%s&sid=%s&hid=%s", hit,
+                        media.clientId, media.projectId, media.id, media.categoryId, ORIGIN_SDK_ANDROID, event.sessionId, hitId));
+
+                // same hit, same key, also sent so that replayed hits can be discarded by the server
+                spool.enqueue(event.sessionId + ":" + hitId, CHANNEL_STTM2, payload.toString());
+                hasHits = true;
+            }
+            catch (JSONException e) {
+                Log.e(getClass().getSimpleName(), "Failed to track event", e);
+            }
+        }
+
+        if (hasHits)
+            spool.flush();
+    }
+
+    private String getSttm2RequestUrl(SambaMediaConfig media) {
+        return String.format("%s%s/jwt/%s", endpoint, media.projectHash, media.id);
+    }
+
+    private static final class Session {
+        // a media may be played again with the same session ID
+        final long startedAt;
+        int hitCount;
+
+        Session(long startedAt) {
+            this.startedAt = startedAt;
+        }
+
+        /**
+         * @return Identifies the next hit within the session, e.g. "1546300800000.3"
+         */
+        String nextHitId() {
+            return startedAt + "." + ++hitCount;
+        }
+    }
+}
@@ -0,0 +1,255 @@
+package com.sambatech.player.plugins;
+
+import android.support.annotation.NonNull;
+import android.util.Log;
+
+import com.sambatech.player.utils.SambaExecutor;
+import com.sambatech.player.utils.SambaHttpClient;
+import com.sambatech.player.utils.TokenDecoder;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executor;
+
+/**
+ * Keeps STTM2 tokens (key and URL) per live media until they expire, so tracking hits
+ * do not request a token each.
+ *
+ * Expiration comes from the key (JWT) claims. Tokens are refreshed in background some time
+ * before expiring, meanwhile the current one is still served. Callers needing a token while
+ * there is none valid share a single request.
+ */
+class Sttm2TokenCache {
+
+    static final long DEFAULT_TTL = 5 * 60 * 1000;
+    static final long MIN_TTL = 30 * 1000;
+    static final long REFRESH_MARGIN = 90 * 1000;
+
+    private static final int MAX_ENTRIES = 16;
+
+    private static Sttm2TokenCache instance;
+
+    /**
+     * Requests and decodes a token.
+     */
+    interface Fetcher {
+        /**
+         * @return The token or null if the response has none
+         */
+        Token fetch(@NonNull String jwtUrl, @NonNull String mediaId, String defaultUrl) throws IOException;
+    }
+
+    /**
+     * An STTM2 token and its validity.
+     */
+    static final class Token {
+        final String key;
+        final String url;
+        final long expiresAt;
+        final long refreshAt;
+
+        Token(String key, String url, long expiresAt, long refreshAt) {
+            this.key = key;
+            this.url = url;
+            this.expiresAt = expiresAt;
+            this.refreshAt = refreshAt;
+        }
+    }
+
+    private final Fetcher fetcher;
+    private final Executor executor;
+    private final Map<String, Entry> entries = new LinkedHashMap<String, Entry>(MAX_ENTRIES, .75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+            return size() > MAX_ENTRIES;
+        }
+    };
+
+    Sttm2TokenCache(@NonNull Fetcher fetcher, @NonNull Executor executor) {
+        this.fetcher = fetcher;
+        this.executor = executor;
+    }
+
+    static synchronized Sttm2TokenCache getInstance() {
+        if (instance == null) {
+            instance = new Sttm2TokenCache(new Fetcher() {
+                @Override
+                public Token fetch(@NonNull String jwtUrl, @NonNull String mediaId, String defaultUrl) throws IOException {
+                    return Sttm2TokenCache.fetch(jwtUrl, mediaId, defaultUrl);
+                }
+            }, SambaExecutor.getExecutor());
+        }
+
+        return instance;
+    }
+
+    /**
+     * Retrieves a valid token, requesting one if needed.
+     * Blocks while requesting, must not be called on the main thread.
+     *
+     * @param jwtUrl Token endpoint (also the cache key)
+     * @param mediaId Live media ID (decodes the token)
+     * @param defaultUrl Tracking URL used when the token has none
+     * @return The token or null if the response had none
+     * @throws IOException If the token could not be requested
+     */
+    Token get(@NonNull String jwtUrl, @NonNull String mediaId, String defaultUrl) throws IOException {
+        Entry entry = getEntry(jwtUrl);
+
+        // concurrent callers wait for the same request
+        synchronized (entry) {
+            long now = System.currentTimeMillis();
+            Token token = entry.token;
+
+            if (token != null && now < token.expiresAt) {
+                if (now >= token.refreshAt)
+                    refreshAsync(entry, jwtUrl, mediaId, defaultUrl);
+
+                return token;
+            }
+
+            return entry.token = fetcher.fetch(jwtUrl, mediaId, defaultUrl);
+        }
+    }
+
+    /**
+     * Requests a token in background, unless there is a valid one.
+     */
+    void prefetch(@NonNull String jwtUrl, @NonNull String mediaId, String defaultUrl) {
+        Entry entry = getEntry(jwtUrl);
+
+        synchronized (entry) {
+            Token token = entry.token;
+
+            if (token == null || System.currentTimeMillis() >= token.refreshAt)
+                refreshAsync(entry, jwtUrl, mediaId, defaultUrl);
+        }
+    }
+
+    /**
+     * Discards a token rejected by the server (e.g. revoked), unless already replaced.
+     */
+    void invalidate(@NonNull String jwtUrl, @NonNull Token token) {
+        Entry entry = getEntry(jwtUrl);
+
+        synchronized (entry) {
+            if (entry.token == token)
+                entry.token = null;
+        }
+    }
+
+    private synchronized Entry getEntry(String jwtUrl) {
+        Entry entry = entries.get(jwtUrl);
+
+        if (entry == null)
+            entries.put(jwtUrl, entry = new Entry());
+
+        return entry;
+    }
+
+    /**
+     * Must be called holding the entry lock.
+     */
+    private void refreshAsync(final Entry entry, final String jwtUrl, final String mediaId, final String defaultUrl) {
+        if (entry.isRefreshing)
+            return;
+
+        entry.isRefreshing = true;
+
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                Token token = null;
+
+                try {
+                    token = fetcher.fetch(jwtUrl, mediaId, defaultUrl);
+                }
+                catch (IOException e) {
+                    Log.w(Sttm2TokenCache.class.getSimpleName(), "Failed to refresh STTM2 token", e);
+                }
+
+                synchronized (entry) {
+                    entry.isRefreshing = false;
+
+                    // keeps the current one on failure
+                    if (token != null)
+                        entry.token = token;
+                }
+            }
+        });
+    }
+
+    /**
+     * Requests a token from the player API.
+     */
+    static Token fetch(@NonNull String jwtUrl, @NonNull String mediaId, String defaultUrl) throws IOException {
+        byte[] body = SambaHttpClient.get(jwtUrl, Collections.singletonMap("Content-Type", "text/plain")).body;
+
+        try {
+            return parse(body, mediaId, defaultUrl, System.currentTimeMillis());
+        }
+        catch (JSONException | UnsupportedEncodingException e) {
+            throw new IOException("Invalid STTM2 token", e);
+        }
+    }
+
+    /**
+     * Decodes a token response.
+     * @param now Time of the response in milliseconds
+     */
+    static Token parse(@NonNull byte[] body, @NonNull String mediaId, String defaultUrl, long now)
+            throws JSONException, UnsupportedEncodingException {
+
+        if (body.length == 0)
+            return null;
+
+        JSONObject json = new JSONObject(new String(TokenDecoder.decode(body, TokenDecoder.getDelimiter(mediaId)), "UTF-8"));
+
+        if (!json.has("key"))
+            return null;
+
+        String key = json.getString("key");
+        long expiresAt = getExpiration(key, now);
+
+        return new Token(key, json.has("url") ? json.getString("url") : defaultUrl, expiresAt,
+                expiresAt - Math.min(REFRESH_MARGIN, (expiresAt - now) / 2));
+    }
+
+    /**
+     * Reads the expiration from the JWT claims, relative to its issuing (if present)
+     * so that device clock skew does not matter.
+     */
+    private static long getExpiration(String jwt, long now) {
+        String[] parts = jwt.split("\\.");
+
+        if (parts.length < 2)
+            return now + DEFAULT_TTL;
+
+        try {
+            byte[] bytes = parts[1].getBytes("US-ASCII");
+            JSONObject claims = new JSONObject(new String(TokenDecoder.decode(bytes, 0, bytes.length), "UTF-8"));
+            long exp = claims.optLong("exp", 0) * 1000;
+            long iat = claims.optLong("iat", 0) * 1000;
+
+            if (exp <= 0)
+                return now + DEFAULT_TTL;
+
+            return Math.max(iat > 0 ? now + exp - iat : exp, now + MIN_TTL);
+        }
+        catch (JSONException | UnsupportedEncodingException e) {
+            Log.w(Sttm2TokenCache.class.getSimpleName(), "Invalid STTM2 key claims", e);
+            return now + DEFAULT_TTL;
+        }
+    }
+
+    private static final class Entry {
+        Token token;
+        boolean isRefreshing;
+    }
+}
@@ -0,0 +1,114 @@
+package com.sambatech.player.plugins;
+
+/**
+ * Progress (p00-p99) and retention (r00-r99, first time each percentile is watched) buckets
+ * of a STTM session.
+ *
+ * Buckets are kept in bitsets, tracking runs on every PROGRESS event without allocating,
+ * strings are only built when pending buckets are collected.
+ */
+class SttmProgress {
+
+    static final int COLLECT_THRESHOLD = 5;
+
+    // 100 bits each (2 words)
+    private final long[] progresses = new long[2];
+    private final long[] retentions = new long[2];
+    private final long[] trackedRetentions = new long[2];
+    private int pendingCount;
+
+    /**
+     * Tracks the current playback position.
+     * @param time Position in seconds
+     * @param duration Duration in seconds
+     * @return Whether enough buckets are pending to be collected
+     */
+    boolean track(float time, float duration) {
+        return trackPercentile(getPercentile(time, duration));
+    }
+
+    /**
+     * Tracks the percentile being watched.
+     * @param p Percentile (0-99)
+     * @return Whether enough buckets are pending to be collected
+     */
+    boolean trackPercentile(int p) {
+        if (set(progresses, p))
+            ++pendingCount;
+
+        if (set(trackedRetentions, p)) {
+            set(retentions, p);
+            ++pendingCount;
+        }
+
+        return pendingCount >= COLLECT_THRESHOLD;
+    }
+
+    /**
+     * @param time Position in seconds
+     * @param duration Duration in seconds
+     * @return The percentile of the position, 0-99
+     */
+    static int getPercentile(float time, float duration) {
+        int p = (int) (100 * time / duration);
+
+        if (p > 99)
+            return 99;
+
+        return p < 0 ? 0 : p;
+    }
+
+    boolean hasPending() {
+        return pendingCount > 0;
+    }
+
+    /**
+     * Retrieves and clears pending buckets (e.g. "p03,p04,r04").
+     * @return Comma separated buckets, progresses first, or null if there is none
+     */
+    String collect() {
+        if (pendingCount == 0)
+            return null;
+
+        StringBuilder sb = new StringBuilder(pendingCount * 4);
+
+        append(sb, 'p', progresses);
+        append(sb, 'r', retentions);
+        clear(progresses);
+        clear(retentions);
+        pendingCount = 0;
+
+        return sb.toString();
+    }
+
+    /**
+     * @return Whether the bit was not set yet
+     */
+    private static boolean set(long[] bits, int i) {
+        long mask = 1L << (i & 63);
+        long word = bits[i >> 6];
+
+        if ((word & mask) != 0)
+            return false;
+
+        bits[i >> 6] = word | mask;
+        return true;
+    }
+
+    private static void append(StringBuilder sb, char prefix, long[] bits) {
+        for (int w = 0; w < bits.length; ++w) {
+            for (long word = bits[w]; word != 0; word &= word - 1) {
+                int i = (w << 6) + Long.numberOfTrailingZeros(word);
+
+                if (sb.length() > 0)
+                    sb.append(',');
+
+                sb.append(prefix).append((char) ('0' + i / 10)).append((char) ('0' + i % 10));
+            }
+        }
+    }
+
+    private static void clear(long[] bits) {
+        bits[0] = bits[1] = 0;
+    }
+}
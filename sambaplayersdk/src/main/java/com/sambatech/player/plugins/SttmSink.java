@@ -0,0 +1,152 @@
+package com.sambatech.player.plugins;
+
+import android.content.Context;
+import android.support.annotation.NonNull;
+import android.util.Log;
+
+import com.sambatech.player.model.SambaMediaConfig;
+import com.sambatech.player.utils.SambaHttpClient;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Sends VOD events to STTM: starts, watched percentiles (progress and retention) and completions,
+ * one hit per session and batch.
+ */
+class SttmSink implements TrackingSink {
+
+    static final String CHANNEL_STTM = "sttm";
+
+    private final TrackingSpool spool;
+    // sessions started, accessed by the dispatcher thread only
+    private final Map<String, Session> sessions = new HashMap<>();
+
+    /**
+     * Requests the hit URL.
+     */
+    private static final TrackingSpool.Sender sttmSender = new TrackingSpool.Sender() {
+        @Override
+        public void send(@NonNull TrackingSpool.Hit hit) throws IOException {
+            Log.i("sttm", hit.payload);
+            SambaHttpClient.get(hit.payload, Collections.singletonMap("http.agent", "chrome"));
+        }
+    };
+
+    SttmSink(@NonNull Context context) {
+        this(TrackingSpool.getInstance(context));
+    }
+
+    SttmSink(@NonNull TrackingSpool spool) {
+        this.spool = spool;
+        spool.setSender(CHANNEL_STTM, sttmSender);
+    }
+
+    @Override
+    public void onEvents(@NonNull List<TrackingEvent> events) {
+        Map<String, Session> touched = new LinkedHashMap<>();
+
+        for (TrackingEvent event : events) {
+            SambaMediaConfig media = event.media;
+
+            if (media.isLive || media.sttmUrl == null || media.projectHash == null || media.id == null)
+                continue;
+
+            Session session = sessions.get(event.sessionId);
+
+            if (event.type == TrackingEvent.Type.START && session == null)
+                sessions.put(event.sessionId, session = new Session(media, event.time));
+
+            // not started
+            if (session == null)
+                continue;
+
+            touched.put(event.sessionId, session);
+
+            switch (event.type) {
+                case START:
+                    session.targets.add("play");
+                    break;
+
+                case PROGRESS:
+                    if (session.progress.trackPercentile(event.percentile))
+                        session.targets.add(session.progress.collect());
+                    break;
+
+                case COMPLETE:
+                    session.collectProgress();
+                    session.targets.add("complete");
+                    break;
+
+                case END:
+                    session.collectProgress();
+                    sessions.remove(event.sessionId);
+                    break;
+            }
+        }
+
+        boolean hasHits = false;
+
+        for (Session session : touched.values()) {
+            if (session.targets.isEmpty())
+                continue;
+
+            SambaMediaConfig media = session.media;
+            String hitId = session.nextHitId();
+
+            // same hit, same key, also sent so that replayed hits can be discarded by the server
+            // TODO: add version to STTM (BuildConfig.VERSION_NAME)
+            spool.enqueue(media.sessionId + ":" + hitId, CHANNEL_STTM, String.format("%s?sttmm=%s&sttmk=%s&sttms=%s&sttmn=%s&sttmu=123&sttmw=%s",
+                    media.sttmUrl, session.joinTargets(), media.sttmKey, media.sessionId, hitId,
+                    String.format("pid:%s/cat:%s/mid:%s", media.projectId, media.categoryId, media.id)));
+            session.targets.clear();
+            hasHits = true;
+        }
+
+        if (hasHits)
+            spool.flush();
+    }
+
+    private static final class Session {
+        final SambaMediaConfig media;
+        final SttmProgress progress = new SttmProgress();
+        final List<String> targets = new ArrayList<>();
+        // a media may be played again with the same session ID
+        final long startedAt;
+        int hitCount;
+
+        Session(SambaMediaConfig media, long startedAt) {
+            this.media = media;
+            this.startedAt = startedAt;
+        }
+
+        /**
+         * @return Identifies the next hit within the session, e.g. "1546300800000.3"
+         */
+        String nextHitId() {
+            return startedAt + "." + ++hitCount;
+        }
+
+        void collectProgress() {
+            if (progress.hasPending())
+                targets.add(progress.collect());
+        }
+
+        /**
+         * @return Comma separated targets (no <code>TextUtils</code>, so that it runs on the JVM as well)
+         */
+        String joinTargets() {
+            StringBuilder sb = new StringBuilder();
+
+            for (String target : targets)
+                sb.append(sb.length() > 0 ? "," : "").append(target);
+
+            return sb.toString();
+        }
+    }
+}
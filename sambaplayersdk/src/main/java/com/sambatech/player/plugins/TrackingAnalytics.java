@@ -0,0 +1,50 @@
+package com.sambatech.player.plugins;
+
+import android.support.annotation.NonNull;
+
+import com.sambatech.player.model.SambaMediaConfig;
+
+/**
+ * Produces the tracking events not reported by the SDK player events (rebuffers and bitrate switches)
+ * from the internal player analytics, as seen by <code>QoeCollector</code>.
+ */
+class TrackingAnalytics implements QoeCollector.Listener {
+
+    private final SambaMediaConfig media;
+    private final TrackingDispatcher dispatcher;
+    private QoeCollector collector;
+
+    TrackingAnalytics(@NonNull SambaMediaConfig media, @NonNull TrackingDispatcher dispatcher) {
+        this.media = media;
+        this.dispatcher = dispatcher;
+    }
+
+    /**
+     * Listens to the player QoE collector, if any.
+     */
+    void attach(@NonNull PluginManager pluginManager) {
+        detach();
+        collector = (QoeCollector) pluginManager.getPlugin(QoeCollector.class);
+
+        if (collector != null)
+            collector.addListener(this);
+    }
+
+    void detach() {
+        if (collector == null)
+            return;
+
+        collector.removeListener(this);
+        collector = null;
+    }
+
+    @Override
+    public void onRebuffer(long duration) {
+        dispatcher.dispatch(TrackingEvent.rebuffer(media, duration));
+    }
+
+    @Override
+    public void onBitrateSwitch(int bitrate) {
+        dispatcher.dispatch(TrackingEvent.bitrateSwitch(media, bitrate));
+    }
+}
@@ -0,0 +1,268 @@
+package com.sambatech.player.plugins;
+
+import android.content.Context;
+import android.support.annotation.NonNull;
+import android.util.Log;
+
+import com.sambatech.player.utils.SambaExecutor;
+import com.sambatech.player.utils.SambaScheduler;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+
+/**
+ * Delivers the playback events produced by the tracking plugins to every registered sink
+ * (STTM and STTM2 by default).
+ *
+ * Events are queued and delivered in batches, once <code>BATCH_SIZE</code> events are pending,
+ * <code>MAX_DELAY</code> after the first pending one or right away when a session ends.
+ * Batches are delivered in background, one at a time, so producers (main thread) never wait
+ * for sinks. The queue is bounded: when sinks cannot keep up, the oldest progress and heartbeat
+ * events are discarded first, then the oldest rebuffers and bitrate switches. Lifecycle events
+ * (e.g. <code>START</code>, <code>COMPLETE</code>, <code>END</code>), errors and QoE stats are never
+ * discarded, they are few per session and may exceed the capacity meanwhile.
+ *
+ * @see TrackingSink
+ */
+public final class TrackingDispatcher {
+
+    static final int BATCH_SIZE = 20;
+    static final long MAX_DELAY = 5000;
+    static final int CAPACITY = 500;
+
+    // discarding order when the queue is full
+    private static final int PRIORITY_PERIODIC = 0;
+    private static final int PRIORITY_DIAGNOSTIC = 1;
+    private static final int PRIORITY_KEEP = 2;
+
+    private static TrackingDispatcher instance;
+
+    private final SambaScheduler scheduler;
+    private final Executor executor;
+    private final CopyOnWriteArrayList<TrackingSink> sinks = new CopyOnWriteArrayList<>();
+    private final ArrayDeque<TrackingEvent> queue = new ArrayDeque<>();
+    private final List<TrackingSink> defaultSinks = new ArrayList<>();
+    private SambaScheduler.Task delayTask;
+    private boolean isDelivering;
+    private boolean isFlushing;
+    private boolean isDefaultSinksEnabled = true;
+    private int droppedCount;
+
+    private final Runnable deliverTask = new Runnable() {
+        @Override
+        public void run() {
+            deliver();
+        }
+    };
+
+    private final Runnable delayedFlushTask = new Runnable() {
+        @Override
+        public void run() {
+            synchronized (TrackingDispatcher.this) {
+                delayTask = null;
+                requestDelivery(true);
+            }
+        }
+    };
+
+    TrackingDispatcher(@NonNull SambaScheduler scheduler, @NonNull Executor executor) {
+        this.scheduler = scheduler;
+        this.executor = executor;
+    }
+
+    public static synchronized TrackingDispatcher getInstance() {
+        if (instance == null)
+            instance = new TrackingDispatcher(SambaScheduler.getInstance(), SambaExecutor.getExecutor());
+
+        return instance;
+    }
+
+    /**
+     * Registers a sink, it receives events dispatched from now on.
+     */
+    public void addSink(@NonNull TrackingSink sink) {
+        sinks.addIfAbsent(sink);
+    }
+
+    public void removeSink(@NonNull TrackingSink sink) {
+        sinks.remove(sink);
+    }
+
+    /**
+     * Enables or disables the built-in STTM and STTM2 sinks (enabled by default),
+     * e.g. when events should only reach custom sinks.
+     */
+    public synchronized void setDefaultSinksEnabled(boolean enabled) {
+        isDefaultSinksEnabled = enabled;
+
+        for (TrackingSink sink : defaultSinks) {
+            if (enabled)
+                addSink(sink);
+            else removeSink(sink);
+        }
+    }
+
+    /**
+     * @return How many events (progress, heartbeats, rebuffers and bitrate switches) were discarded
+     * for the queue being full
+     */
+    public synchronized int getDroppedCount() {
+        return droppedCount;
+    }
+
+    /**
+     * Creates the built-in sinks, on the first media loaded.
+     */
+    synchronized void registerDefaultSinks(@NonNull Context context) {
+        if (!defaultSinks.isEmpty())
+            return;
+
+        Context appContext = context.getApplicationContext();
+
+        defaultSinks.add(new SttmSink(appContext));
+        defaultSinks.add(new Sttm2Sink(appContext));
+
+        if (isDefaultSinksEnabled)
+            for (TrackingSink sink : defaultSinks)
+                addSink(sink);
+    }
+
+    /**
+     * Queues an event for the sinks.
+     * Sessions ending (<code>END</code>) are delivered right away.
+     */
+    synchronized void dispatch(@NonNull TrackingEvent event) {
+        if (queue.size() >= CAPACITY && !makeRoom(event)) {
+            ++droppedCount;
+            return;
+        }
+
+        queue.addLast(event);
+
+        if (event.type == TrackingEvent.Type.END)
+            requestDelivery(true);
+        else if (queue.size() >= BATCH_SIZE)
+            requestDelivery(false);
+        else if (delayTask == null && !isDelivering)
+            delayTask = scheduler.schedule(delayedFlushTask, MAX_DELAY);
+    }
+
+    /**
+     * Delivers pending events regardless of batch size.
+     */
+    synchronized void flush() {
+        requestDelivery(true);
+    }
+
+    synchronized int getPendingCount() {
+        return queue.size();
+    }
+
+    /**
+     * Discards the oldest of the least important events queued, unless the new one is less important.
+     * Must be called holding the dispatcher lock.
+     *
+     * @return Whether the new event should be queued
+     */
+    private boolean makeRoom(TrackingEvent event) {
+        int priority = getPriority(event.type);
+        TrackingEvent discarded = null;
+        int discardedPriority = PRIORITY_KEEP;
+
+        for (TrackingEvent queued : queue) {
+            int p = getPriority(queued.type);
+
+            if (p < discardedPriority) {
+                discarded = queued;
+                discardedPriority = p;
+
+                if (p == PRIORITY_PERIODIC)
+                    break;
+            }
+        }
+
+        if (discarded == null || discardedPriority > priority)
+            return priority == PRIORITY_KEEP;
+
+        queue.removeFirstOccurrence(discarded);
+        ++droppedCount;
+        return true;
+    }
+
+    /**
+     * @return Lower ones are discarded first when the queue is full
+     */
+    private static int getPriority(TrackingEvent.Type type) {
+        switch (type) {
+            case PROGRESS:
+            case HEARTBEAT:
+                return PRIORITY_PERIODIC;
+
+            case REBUFFER:
+            case BITRATE_SWITCH:
+                return PRIORITY_DIAGNOSTIC;
+
+            default:
+                return PRIORITY_KEEP;
+        }
+    }
+
+    /**
+     * Must be called holding the dispatcher lock.
+     */
+    private void requestDelivery(boolean all) {
+        if (all)
+            isFlushing = true;
+
+        if (delayTask != null) {
+            delayTask.cancel();
+            delayTask = null;
+        }
+
+        if (isDelivering)
+            return;
+
+        isDelivering = true;
+        executor.execute(deliverTask);
+    }
+
+    private void deliver() {
+        while (true) {
+            List<TrackingEvent> batch;
+
+            synchronized (this) {
+                if (queue.isEmpty() || (!isFlushing && queue.size() < BATCH_SIZE)) {
+                    isDelivering = false;
+                    isFlushing = false;
+
+                    // leftovers wait for more events
+                    if (!queue.isEmpty() && delayTask == null)
+                        delayTask = scheduler.schedule(delayedFlushTask, MAX_DELAY);
+
+                    return;
+                }
+
+                batch = new ArrayList<>(Math.min(queue.size(), BATCH_SIZE));
+
+                while (batch.size() < BATCH_SIZE && !queue.isEmpty())
+                    batch.add(queue.pollFirst());
+            }
+
+            List<TrackingEvent> events = Collections.unmodifiableList(batch);
+
+            for (TrackingSink sink : sinks) {
+                try {
+                    sink.onEvents(events);
+                }
+                catch (IOException | RuntimeException e) {
+                    Log.w(TrackingDispatcher.class.getSimpleName(), "Sink failed to handle events: " + sink, e);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package com.sambatech.player.plugins;
+
+import android.support.annotation.NonNull;
+
+import com.sambatech.player.event.SambaErrorEvent;
+import com.sambatech.player.event.SambaEvent;
+import com.sambatech.player.model.SambaMediaConfig;
+import com.sambatech.player.model.SambaPlayerError;
+
+/**
+ * Normalized playback event delivered to tracking sinks.
+ *
+ * @see TrackingSink
+ */
+public final class TrackingEvent {
+
+    public enum Type {
+        /** Media loaded by the player. */
+        LOAD,
+        /** First playback of the session. */
+        START,
+        PLAY,
+        PAUSE,
+        /** Playback reached a percentile (<code>percentile</code>, 0-99), reported again once while it stays there. */
+        PROGRESS,
+        /** Live media still being watched, once a minute while playing. */
+        HEARTBEAT,
+        /** Playback stalled and resumed (<code>value</code>, stall duration in milliseconds). */
+        REBUFFER,
+        /** Adaptive streaming switched video quality (<code>value</code>, new bitrate in bits per second). */
+        BITRATE_SWITCH,
+        /** Playback failed (<code>value</code>, error code and <code>message</code>). */
+        ERROR,
+        COMPLETE,
+        /** Quality of experience stats of the session (<code>qoe</code>), right before it ends. */
+        QOE,
+        /** Session is over (player destroyed), no more events for this session. */
+        END
+    }
+
+    public final Type type;
+    /** Wall clock time in milliseconds. */
+    public final long time;
+    public final SambaMediaConfig media;
+    /** Session of the media, identifies events of the same playback. */
+    public final String sessionId;
+    public final int percentile;
+    public final long value;
+    public final String message;
+    public final QoeStats qoe;
+
+    TrackingEvent(@NonNull Type type, @NonNull SambaMediaConfig media, int percentile, long value, String message,
+                  QoeStats qoe) {
+        this.type = type;
+        this.time = System.currentTimeMillis();
+        this.media = media;
+        this.sessionId = media.sessionId;
+        this.percentile = percentile;
+        this.value = value;
+        this.message = message;
+        this.qoe = qoe;
+    }
+
+    static TrackingEvent of(@NonNull Type type, @NonNull SambaMediaConfig media) {
+        return new TrackingEvent(type, media, -1, 0, null, null);
+    }
+
+    static TrackingEvent progress(@NonNull SambaMediaConfig media, int percentile) {
+        return new TrackingEvent(Type.PROGRESS, media, percentile, 0, null, null);
+    }
+
+    static TrackingEvent rebuffer(@NonNull SambaMediaConfig media, long duration) {
+        return new TrackingEvent(Type.REBUFFER, media, -1, duration, null, null);
+    }
+
+    static TrackingEvent bitrateSwitch(@NonNull SambaMediaConfig media, long bitrate) {
+        return new TrackingEvent(Type.BITRATE_SWITCH, media, -1, bitrate, null, null);
+    }
+
+    /**
+     * @return The event or null if the error is not worth tracking (e.g. reconnection countdowns)
+     */
+    static TrackingEvent error(@NonNull SambaMediaConfig media, @NonNull SambaEvent event) {
+        SambaErrorEvent error;
+
+        // values of the event, not the current ones of the error
+        if (event instanceof SambaErrorEvent)
+            error = (SambaErrorEvent) event;
+        else if (event.getData() instanceof SambaPlayerError)
+            error = new SambaErrorEvent((SambaPlayerError) event.getData());
+        else return null;
+
+        if (error.getSeverity() == SambaPlayerError.Severity.info)
+            return null;
+
+        return new TrackingEvent(Type.ERROR, media, -1, error.getCode(), error.getMessage(), null);
+    }
+
+    static TrackingEvent qoe(@NonNull SambaMediaConfig media, @NonNull QoeStats stats) {
+        return new TrackingEvent(Type.QOE, media, -1, 0, null, stats);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s[%s, %s, %s]", type, sessionId, percentile >= 0 ? percentile : value, qoe != null ? qoe : message);
+    }
+}
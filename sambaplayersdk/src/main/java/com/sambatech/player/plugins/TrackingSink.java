@@ -0,0 +1,24 @@
+package com.sambatech.player.plugins;
+
+import android.support.annotation.NonNull;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Receives the playback events of every session, e.g. to send them to an analytics backend.
+ * Register it through <code>TrackingDispatcher.getInstance().addSink()</code>.
+ *
+ * Events are delivered in batches, in order, on a background thread and one batch at a time
+ * (a sink is never called concurrently). Sinks must not block for long, a slow sink delays
+ * the others and events get discarded (oldest first) once the dispatcher queue is full.
+ */
+public interface TrackingSink {
+
+    /**
+     * @param events Events since the last batch, read-only
+     * @throws IOException If the batch could not be handled, it will not be delivered again
+     * (durable sinks should spool)
+     */
+    void onEvents(@NonNull List<TrackingEvent> events) throws IOException;
+}
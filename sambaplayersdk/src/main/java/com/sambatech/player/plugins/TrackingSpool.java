@@ -0,0 +1,579 @@
+package com.sambatech.player.plugins;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.net.ConnectivityManager;
+import android.support.annotation.NonNull;
+import android.util.Log;
+
+import com.sambatech.player.utils.Helpers;
+import com.sambatech.player.utils.SambaExecutor;
+import com.sambatech.player.utils.SambaScheduler;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+
+/**
+ * Durable queue of tracking hits shared by the tracking plugins, so hits survive network
+ * failures and process restarts (sessions included).
+ *
+ * Hits are appended to a log file (additions and acknowledgements) which is compacted as it grows,
+ * pending hits are capped in size and age (oldest are discarded first). Flushing sends pending hits
+ * in batches through the sender registered for their channel, failures are retried with exponential
+ * backoff and right away once connectivity returns.
+ *
+ * Delivery is at-least-once: a hit is only discarded after being sent, thus it may be sent again
+ * if the process dies in between. Each hit has a unique key derived from its content (e.g. session
+ * and hit sequence), hits already queued or sent (recently) with the same key are ignored. Senders
+ * should send the key along, so that the server can discard hits sent twice.
+ */
+class TrackingSpool {
+
+    static final int BATCH_SIZE = 20;
+    static final long MAX_BYTES = 256 * 1024;
+    static final long MAX_AGE = 3 * 24 * 60 * 60 * 1000L;
+    static final long MIN_BACKOFF = 10000;
+    static final long MAX_BACKOFF = 10 * 60 * 1000;
+
+    private static final String FILE = "sambaplayer_tracking";
+    // stored as modified UTF-8 (64 KB max)
+    private static final int MAX_PAYLOAD_LENGTH = 16 * 1024;
+    private static final int OP_ADD = 1;
+    private static final int OP_ACK = 2;
+    private static final int SENT_KEYS = 500;
+    private static final long COMPACT_SLACK = 32 * 1024;
+
+    private static TrackingSpool instance;
+
+    /**
+     * Sends hits of a channel, e.g. builds and requests a tracking URL.
+     * Runs in background.
+     */
+    interface Sender {
+        /**
+         * @param hit The hit to send
+         * @throws IOException If it could not be sent (will be retried)
+         */
+        void send(@NonNull Hit hit) throws IOException;
+    }
+
+    /**
+     * A tracking hit, its payload is interpreted by the channel sender.
+     */
+    static final class Hit {
+        final String key;
+        final String channel;
+        final String payload;
+        final long time;
+
+        Hit(@NonNull String key, @NonNull String channel, @NonNull String payload, long time) {
+            this.key = key;
+            this.channel = channel;
+            this.payload = payload;
+            this.time = time;
+        }
+
+        long getSize() {
+            return 2 * (key.length() + channel.length() + payload.length()) + 16;
+        }
+    }
+
+    private final File file;
+    private final Context context;
+    private final SambaScheduler scheduler;
+    private final Executor executor;
+    private final Object ioLock = new Object();
+    private final Map<String, Sender> senders = new HashMap<>();
+    private final LinkedHashMap<String, Hit> pending = new LinkedHashMap<>();
+    private final List<Hit> unwritten = new ArrayList<>();
+    private final LinkedHashMap<String, Boolean> sentKeys = new LinkedHashMap<String, Boolean>() {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+            return size() > SENT_KEYS;
+        }
+    };
+    private final Runnable writer = new Runnable() {
+        @Override
+        public void run() {
+            write();
+        }
+    };
+    private final Runnable sender = new Runnable() {
+        @Override
+        public void run() {
+            send();
+        }
+    };
+    private final Runnable retry = new Runnable() {
+        @Override
+        public void run() {
+            synchronized (TrackingSpool.this) {
+                retryTask = null;
+            }
+
+            flush();
+        }
+    };
+
+    private long pendingBytes;
+    private long logBytes;
+    private long droppedCount;
+    private boolean isLoaded;
+    private boolean isWriting;
+    private boolean isSending;
+    private int failures;
+    private SambaScheduler.Task retryTask;
+
+    /**
+     * @param file Log file
+     * @param context Used to check connectivity (null to assume always connected)
+     * @param scheduler Where retries are scheduled
+     * @param executor Where I/O runs
+     */
+    TrackingSpool(@NonNull File file, Context context, @NonNull SambaScheduler scheduler, @NonNull Executor executor) {
+        this.file = file;
+        this.context = context;
+        this.scheduler = scheduler;
+        this.executor = executor;
+    }
+
+    static synchronized TrackingSpool getInstance(@NonNull Context context) {
+        if (instance == null) {
+            final Context appContext = context.getApplicationContext();
+            final TrackingSpool spool = new TrackingSpool(new File(appContext.getFilesDir(), FILE), appContext,
+                    SambaScheduler.getInstance(), SambaExecutor.getExecutor());
+
+            appContext.registerReceiver(new BroadcastReceiver() {
+                @Override
+                public void onReceive(Context context, Intent intent) {
+                    if (Helpers.isNetworkAvailable(appContext))
+                        spool.onConnectivityRestored();
+                }
+            }, new IntentFilter(ConnectivityManager.CONNECTIVITY_ACTION));
+
+            instance = spool;
+        }
+
+        return instance;
+    }
+
+    /**
+     * Registers the sender of a channel, pending hits of unknown channels wait for theirs.
+     */
+    synchronized void setSender(@NonNull String channel, @NonNull Sender sender) {
+        senders.put(channel, sender);
+    }
+
+    /**
+     * Queues a hit (does not send it, see <code>flush()</code>).
+     * @param key Unique key of the hit (e.g. session and sequence)
+     * @param channel Channel whose sender will send the hit
+     * @param payload Hit data
+     */
+    void enqueue(@NonNull String key, @NonNull String channel, @NonNull String payload) {
+        if (payload.length() > MAX_PAYLOAD_LENGTH) {
+            Log.w(getClass().getSimpleName(), "Discarding oversized tracking hit: " + key);
+            return;
+        }
+
+        Hit hit = new Hit(key, channel, payload, System.currentTimeMillis());
+
+        synchronized (this) {
+            if (pending.containsKey(key) || sentKeys.containsKey(key))
+                return;
+
+            add(hit);
+            unwritten.add(hit);
+
+            if (isWriting)
+                return;
+
+            isWriting = true;
+        }
+
+        executor.execute(writer);
+    }
+
+    /**
+     * Sends pending hits, unless waiting to retry.
+     */
+    void flush() {
+        synchronized (this) {
+            if (isSending || retryTask != null)
+                return;
+
+            isSending = true;
+        }
+
+        executor.execute(sender);
+    }
+
+    synchronized int getPendingCount() {
+        return pending.size();
+    }
+
+    /**
+     * @return Number of hits discarded for being too old or over the size cap
+     */
+    synchronized long getDroppedCount() {
+        return droppedCount;
+    }
+
+    void onConnectivityRestored() {
+        synchronized (this) {
+            failures = 0;
+
+            if (retryTask != null) {
+                retryTask.cancel();
+                retryTask = null;
+            }
+
+            if (pending.isEmpty() && isLoaded)
+                return;
+        }
+
+        flush();
+    }
+
+    /**
+     * Must be called holding the spool lock.
+     */
+    private void add(Hit hit) {
+        pending.put(hit.key, hit);
+        pendingBytes += hit.getSize();
+
+        // over the cap, discards the oldest
+        for (Iterator<Hit> it = pending.values().iterator(); pendingBytes > MAX_BYTES && it.hasNext(); ) {
+            Hit h = it.next();
+
+            it.remove();
+            pendingBytes -= h.getSize();
+            ++droppedCount;
+        }
+    }
+
+    private void write() {
+        synchronized (ioLock) {
+            load();
+
+            List<Hit> hits;
+
+            synchronized (this) {
+                hits = new ArrayList<>(unwritten);
+                unwritten.clear();
+                isWriting = false;
+            }
+
+            append(hits, null);
+
+            // hits over the cap are still in the log
+            if (logBytes > 2 * getPendingBytes() + COMPACT_SLACK)
+                compact();
+        }
+    }
+
+    private void send() {
+        while (true) {
+            synchronized (ioLock) {
+                load();
+            }
+
+            List<Hit> batch = new ArrayList<>();
+            Map<String, Sender> channels;
+
+            synchronized (this) {
+                channels = new HashMap<>(senders);
+
+                for (Hit hit : pending.values()) {
+                    if (!channels.containsKey(hit.channel))
+                        continue;
+
+                    batch.add(hit);
+
+                    if (batch.size() == BATCH_SIZE)
+                        break;
+                }
+
+                if (batch.isEmpty()) {
+                    isSending = false;
+                    return;
+                }
+            }
+
+            if (!isNetworkAvailable()) {
+                // retried as soon as connectivity returns (or after a long while)
+                scheduleRetry(MAX_BACKOFF);
+                return;
+            }
+
+            List<String> sent = new ArrayList<>();
+            IOException error = null;
+            long now = System.currentTimeMillis();
+
+            for (Hit hit : batch) {
+                try {
+                    if (now - hit.time < MAX_AGE)
+                        channels.get(hit.channel).send(hit);
+
+                    sent.add(hit.key);
+                }
+                catch (IOException e) {
+                    error = e;
+                    break;
+                }
+                catch (RuntimeException e) {
+                    // malformed hits would be retried forever
+                    Log.w(getClass().getSimpleName(), "Discarding tracking hit: " + hit.payload, e);
+                    sent.add(hit.key);
+                }
+            }
+
+            acknowledge(sent);
+
+            if (error != null) {
+                long backoff;
+
+                synchronized (this) {
+                    backoff = Math.min(MIN_BACKOFF << Math.min(failures++, 16), MAX_BACKOFF);
+                }
+
+                Log.w(getClass().getSimpleName(), "Failed to send tracking hits, retrying in " + backoff + "ms", error);
+                scheduleRetry(backoff);
+                return;
+            }
+
+            synchronized (this) {
+                failures = 0;
+            }
+        }
+    }
+
+    private void acknowledge(List<String> keys) {
+        if (keys.isEmpty())
+            return;
+
+        synchronized (this) {
+            for (String key : keys) {
+                Hit hit = pending.remove(key);
+
+                if (hit != null)
+                    pendingBytes -= hit.getSize();
+
+                sentKeys.put(key, true);
+            }
+        }
+
+        synchronized (ioLock) {
+            append(null, keys);
+
+            if (logBytes > 2 * getPendingBytes() + COMPACT_SLACK)
+                compact();
+        }
+    }
+
+    private void scheduleRetry(long delay) {
+        synchronized (this) {
+            isSending = false;
+
+            if (retryTask == null)
+                retryTask = scheduler.schedule(retry, delay);
+        }
+    }
+
+    private synchronized long getPendingBytes() {
+        return pendingBytes;
+    }
+
+    private boolean isNetworkAvailable() {
+        return context == null || Helpers.isNetworkAvailable(context);
+    }
+
+    /**
+     * Reads the log file (once), hits queued meanwhile go after the stored ones.
+     * Must be called holding the I/O lock.
+     */
+    private void load() {
+        synchronized (this) {
+            if (isLoaded)
+                return;
+        }
+
+        LinkedHashMap<String, Hit> stored = new LinkedHashMap<>();
+        Map<String, Boolean> acked = new HashMap<>();
+        DataInputStream in = null;
+        boolean isCorrupted = false;
+
+        if (file.exists()) {
+            try {
+                in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+
+                while (true) {
+                    int op;
+
+                    try {
+                        op = in.readByte();
+                    }
+                    catch (EOFException e) {
+                        break;
+                    }
+
+                    if (op == OP_ADD) {
+                        Hit hit = new Hit(in.readUTF(), in.readUTF(), in.readUTF(), in.readLong());
+
+                        if (!acked.containsKey(hit.key))
+                            stored.put(hit.key, hit);
+                    }
+                    else if (op == OP_ACK) {
+                        String key = in.readUTF();
+
+                        stored.remove(key);
+                        acked.put(key, true);
+                    }
+                    else throw new IOException("Invalid operation: " + op);
+                }
+            }
+            catch (IOException e) {
+                // e.g. truncated by a crash while writing, keeps what was read
+                Log.w(getClass().getSimpleName(), "Error reading tracking spool", e);
+                isCorrupted = true;
+            }
+            finally {
+                close(in);
+            }
+        }
+
+        long now = System.currentTimeMillis();
+
+        synchronized (this) {
+            LinkedHashMap<String, Hit> current = new LinkedHashMap<>(pending);
+
+            pending.clear();
+            pendingBytes = 0;
+
+            for (Hit hit : stored.values()) {
+                if (now - hit.time < MAX_AGE)
+                    add(hit);
+                else ++droppedCount;
+            }
+
+            for (Hit hit : current.values())
+                if (!pending.containsKey(hit.key) && !acked.containsKey(hit.key))
+                    add(hit);
+
+            sentKeys.putAll(acked);
+            isLoaded = true;
+        }
+
+        logBytes = file.length();
+
+        if (isCorrupted || logBytes > 2 * getPendingBytes() + COMPACT_SLACK)
+            compact();
+    }
+
+    /**
+     * Must be called holding the I/O lock.
+     */
+    private void append(List<Hit> hits, List<String> keys) {
+        if (hits != null && hits.isEmpty() || keys != null && keys.isEmpty())
+            return;
+
+        File directory = file.getParentFile();
+
+        if (directory != null && !directory.exists() && !directory.mkdirs())
+            return;
+
+        DataOutputStream out = null;
+
+        try {
+            out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file, true)));
+            write(out, hits, keys);
+        }
+        catch (IOException e) {
+            Log.w(getClass().getSimpleName(), "Error writing tracking spool", e);
+        }
+        finally {
+            close(out);
+        }
+
+        logBytes = file.length();
+    }
+
+    /**
+     * Rewrites the log with pending hits only.
+     * Must be called holding the I/O lock.
+     */
+    private void compact() {
+        List<Hit> hits;
+
+        synchronized (this) {
+            hits = new ArrayList<>(pending.values());
+        }
+
+        File tmp = new File(file.getPath() + ".tmp");
+        DataOutputStream out = null;
+        boolean isWritten = false;
+
+        try {
+            out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)));
+            write(out, hits, null);
+            isWritten = true;
+        }
+        catch (IOException e) {
+            Log.w(getClass().getSimpleName(), "Error compacting tracking spool", e);
+        }
+        finally {
+            close(out);
+        }
+
+        if (isWritten && tmp.renameTo(file))
+            logBytes = file.length();
+        else tmp.delete();
+    }
+
+    private static void write(DataOutputStream out, List<Hit> hits, List<String> keys) throws IOException {
+        if (hits != null) {
+            for (Hit hit : hits) {
+                out.writeByte(OP_ADD);
+                out.writeUTF(hit.key);
+                out.writeUTF(hit.channel);
+                out.writeUTF(hit.payload);
+                out.writeLong(hit.time);
+            }
+        }
+
+        if (keys != null) {
+            for (String key : keys) {
+                out.writeByte(OP_ACK);
+                out.writeUTF(key);
+            }
+        }
+    }
+
+    private static void close(Closeable closeable) {
+        if (closeable == null) return;
+
+        try {
+            closeable.close();
+        }
+        catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+}
@@ -1,185 +1,124 @@
 package com.sambatech.player.plugins;
 
-import android.content.Context;
-import android.os.AsyncTask;
 import android.support.annotation.NonNull;
-import android.text.TextUtils;
 import android.util.Log;
 
 import com.google.android.exoplayer2.ui.SimpleExoPlayerView;
 import com.sambatech.player.SambaPlayer;
 import com.sambatech.player.event.SambaEvent;
-import com.sambatech.player.event.SambaEventBus;
+import com.sambatech.player.event.SambaPlayerEventBus;
 import com.sambatech.player.event.SambaPlayerListener;
+import com.sambatech.player.event.SambaProgressEvent;
 import com.sambatech.player.model.SambaMediaConfig;
-import com.sambatech.player.utils.Helpers;
-
-import java.io.IOException;
-import java.net.URL;
-import java.net.URLConnection;
-import java.util.ArrayList;
-import java.util.HashSet;
-import java.util.List;
-import java.util.Locale;
-import java.util.Timer;
-import java.util.TimerTask;
-import java.util.TreeSet;
 
 /**
  * Plugin responsible for sending different kinds of player media tracking data.
  *
+ * Produces the VOD tracking events, delivered to the sinks (STTM by default) by <code>TrackingDispatcher</code>.
+ *
  * @author Leandro Zanol - 28/12/15
  */
 class TrackingVOD implements Tracking {
 
     private SambaMediaConfig media;
-    private Sttm sttm;
-    private Context context;
+    private SambaPlayerEventBus eventBus;
+    private TrackingDispatcher dispatcher;
+    private TrackingAnalytics analytics;
+    private boolean hasStarted;
+    private int percentile = -1;
+    private int percentileCount;
 
     private SambaPlayerListener playerListener = new SambaPlayerListener() {
         @Override
         public void onStart(SambaEvent event) {
             Log.i("sttm", "onstart");
-            init();
-
-            if (sttm != null)
-                sttm.trackStart();
+            hasStarted = true;
+            dispatcher.dispatch(TrackingEvent.of(TrackingEvent.Type.START, media));
         }
 
         @Override
         public void onProgress(SambaEvent event) {
-            if (sttm != null)
-                sttm.trackProgress((float) event.getDataAll()[0], (float) event.getDataAll()[1]);
-        }
-
-        @Override
-        public void onFinish(SambaEvent event) {
-            if (sttm != null)
-                sttm.trackComplete();
-        }
-    };
-
-    public void onLoad(@NonNull SambaPlayer player) {
-        Log.i("track", "load");
-        media = (SambaMediaConfig) player.getMedia();
-        context = player.getContext().getApplicationContext();
+            if (!hasStarted)
+                return;
 
-        if (media.projectHash != null && media.id != null)
-            SambaEventBus.subscribe(playerListener);
+            int p;
 
-        PluginManager.getInstance().notifyPluginLoaded(this);
-    }
+            if (event instanceof SambaProgressEvent) {
+                SambaProgressEvent progress = (SambaProgressEvent) event;
+                p = SttmProgress.getPercentile(progress.getPosition(), progress.getDuration());
+            }
+            else p = SttmProgress.getPercentile((float) event.getDataAll()[0], (float) event.getDataAll()[1]);
 
-    public void onInternalPlayerCreated(@NonNull SimpleExoPlayerView internalPlayer) {
-    }
+            if (p != percentile) {
+                percentile = p;
+                percentileCount = 0;
+            }
 
-    public void onDestroy() {
-        Log.i("track", "destroy");
-        SambaEventBus.unsubscribe(playerListener);
+            // a few events per second, only the first two of a percentile matter to STTM
+            // (the second one tracks it again if the first one got its buckets collected)
+            if (++percentileCount > 2)
+                return;
 
-        if (sttm != null) {
-            sttm.destroy();
-            sttm = null;
+            dispatcher.dispatch(TrackingEvent.progress(media, p));
         }
-    }
-
-    private void init() {
-        if (media.sttmUrl != null && sttm == null)
-            sttm = new Sttm(context);
-    }
-
-    private class UrlTracker extends AsyncTask<String, Void, Void> {
 
         @Override
-        protected Void doInBackground(String... params) {
-            try {
-                Log.i(getClass().getSimpleName(), params[0]);
-
-                for (String url : params) {
-                    URL myURL = new URL(url);
-                    URLConnection conn = myURL.openConnection();
-                    conn.setRequestProperty("http.agent", "chrome");
-                    conn.setDoOutput(false);
-                    conn.setDoInput(true);
-                    conn.getInputStream();
-                }
-            } catch (IOException e) {
-                Log.e(getClass().getSimpleName(), "Failed to fetch URL", e);
-            }
-
-            return null;
-        }
-    }
-
-    private class Sttm extends TimerTask {
-
-        private final Context context;
-        private List<String> targets = new ArrayList<>();
-        private Timer sttmTimer;
-        private TreeSet<String> progresses = new TreeSet<>();
-        private HashSet<Integer> trackedRetentions = new HashSet<>();
-
-        Sttm(Context context) {
-            this.context = context;
-            sttmTimer = new Timer();
-            sttmTimer.scheduleAtFixedRate(this, 0, 5000);
+        public void onFinish(SambaEvent event) {
+            if (hasStarted)
+                dispatcher.dispatch(TrackingEvent.of(TrackingEvent.Type.COMPLETE, media));
         }
 
         @Override
-        public void run() {
-            if (targets.size() == 0)
-                return;
+        public void onError(SambaEvent event) {
+            TrackingEvent error = TrackingEvent.error(media, event);
 
-            if (Helpers.isNetworkAvailable(context)) {
-                // TODO: add version to STTM (BuildConfig.VERSION_NAME)
-                new UrlTracker().execute(String.format("%s?sttmm=%s&sttmk=%s&sttms=%s&sttmu=123&sttmw=%s",
-                        media.sttmUrl, TextUtils.join(",", targets), media.sttmKey, media.sessionId,
-                        String.format("pid:%s/cat:%s/mid:%s", media.projectId, media.categoryId, media.id)));
-            }
-
-            targets.clear();
-        }
-
-        void trackStart() {
-            targets.add("play");
+            if (hasStarted && error != null)
+                dispatcher.dispatch(error);
         }
+    };
 
-        void trackComplete() {
-            collectProgress();
-            targets.add("complete");
-        }
+    public void onLoad(@NonNull SambaPlayer player) {
+        Log.i("track", "load");
+        TrackingDispatcher dispatcher = TrackingDispatcher.getInstance();
 
-        void trackProgress(float time, float duration) {
-            int p = (int) (100 * time / duration);
+        dispatcher.registerDefaultSinks(player.getContext());
+        attach((SambaMediaConfig) player.getMedia(), player.getEventBus(), dispatcher);
+        analytics.attach(player.getPluginManager());
 
-            if (p > 99)
-                p = 99;
+        player.getPluginManager().notifyPluginLoaded(this);
+    }
 
-            progresses.add(String.format(Locale.getDefault(), "p%02d", p));
+    /**
+     * Tracks the media from its events alone, no player required (e.g. a replayed session).
+     */
+    void attach(@NonNull SambaMediaConfig media, @NonNull SambaPlayerEventBus eventBus,
+                @NonNull TrackingDispatcher dispatcher) {
+        this.media = media;
+        this.eventBus = eventBus;
+        this.dispatcher = dispatcher;
+        analytics = new TrackingAnalytics(media, dispatcher);
 
-            if (!trackedRetentions.contains(p))
-                progresses.add(String.format(Locale.getDefault(), "r%02d", p));
+        if (media.projectHash != null && media.id != null)
+            eventBus.subscribe(playerListener);
+    }
 
-            trackedRetentions.add(p);
+    public void onInternalPlayerCreated(@NonNull SimpleExoPlayerView internalPlayer) {
+    }
 
-            if (progresses.size() >= 5)
-                collectProgress();
-        }
+    public void onDestroy() {
+        Log.i("track", "destroy");
+        if (eventBus != null)
+            eventBus.unsubscribe(playerListener);
 
-        void destroy() {
-            if (sttmTimer != null) {
-                sttmTimer.cancel();
-                sttmTimer.purge();
-                sttmTimer = null;
-            }
+        if (analytics != null) {
+            analytics.detach();
+            analytics = null;
         }
 
-        private void collectProgress() {
-            if (progresses.size() == 0)
-                return;
-
-            targets.add(TextUtils.join(",", progresses));
-            progresses.clear();
+        // pending events are delivered right away
+        if (hasStarted) {
+            dispatcher.dispatch(TrackingEvent.of(TrackingEvent.Type.END, media));
+            hasStarted = false;
         }
     }
 }
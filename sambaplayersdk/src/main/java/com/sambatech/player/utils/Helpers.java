@@ -10,12 +10,9 @@ import com.sambatech.player.model.SambaMedia;
 import java.io.BufferedReader;
 import java.io.File;
 import java.io.IOException;
-import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.net.HttpURLConnection;
-import java.net.URL;
 import java.util.Comparator;
-import java.util.Scanner;
 
 /**
  * Useful stuff for whole SambaPlayer project.
@@ -69,7 +66,7 @@ public final class Helpers {
 
 	public static void requestUrl(String url, RequestCallback callback) {
 		try {
-			requestUrl((HttpURLConnection)new URL(url).openConnection(), callback);
+			requestUrl(SambaHttpClient.open(url), callback);
 		}
 		catch (IOException e) {
 			e.printStackTrace();
@@ -80,44 +77,12 @@ public final class Helpers {
 		new AsyncTask<HttpURLConnection, Void, Response>() {
 			@Override
 			protected Response doInBackground(HttpURLConnection... params) {
-				HttpURLConnection con = params[0];
-				InputStream inputStream = null;
-				Scanner scanner = null;
-				Scanner scannerDelimited = null;
-
 				try {
-					con.connect();
-
-					/*System.out.println("Request method: " + con.getRequestMethod());
-					System.out.println("Permission: " + con.getPermission());
-					System.out.println("Response code: " + con.getResponseCode());
-					System.out.println("Response msg: " + con.getResponseMessage());
-
-					s = "";
-					for (Map.Entry<String, List<String>> kv : con.getHeaderFields().entrySet())
-						s += kv.getKey() + ": " + kv.getValue() + "\n";
-					System.out.println(s);*/
-
-					inputStream = con.getInputStream();
-					scanner = new Scanner(inputStream);
-					scannerDelimited = scanner.useDelimiter("\\A");
-
-					return new Response(scannerDelimited.hasNext() ? scannerDelimited.next() : "", null);
+					return new Response(SambaHttpClient.execute(params[0]).string(), null);
 				}
 				catch (Exception e) {
 					return new Response(null, e);
 				}
-				finally {
-					try {
-						if (con != null) con.disconnect();
-						if (inputStream != null) inputStream.close();
-						if (scanner != null) scanner.close();
-						if (scannerDelimited != null) scannerDelimited.close();
-					}
-					catch (Exception e) {
-						e.printStackTrace();
-					}
-				}
 			}
 
 			@Override
@@ -129,7 +94,7 @@ public final class Helpers {
 
 				callback.onSuccess(response.response);
 			}
-		}.execute(con);
+		}.executeOnExecutor(SambaExecutor.getExecutor(), con);
 	}
 
 	public interface RequestCallback {
@@ -0,0 +1,107 @@
+package com.sambatech.player.utils;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.support.annotation.NonNull;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Bounded thread pool shared by every SDK background task (API requests, tracking, DRM licenses, etc.).
+ *
+ * Tasks run concurrently up to the configured limit, extra ones are queued.
+ * Idle threads are released after a while, so an idle SDK holds no threads.
+ */
+public final class SambaExecutor {
+
+	public static final int DEFAULT_MAX_CONCURRENCY = 4;
+
+	private static final long KEEP_ALIVE_SECONDS = 30;
+
+	private static final ThreadPoolExecutor executor;
+	private static final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+	static {
+		executor = new ThreadPoolExecutor(DEFAULT_MAX_CONCURRENCY, DEFAULT_MAX_CONCURRENCY,
+				KEEP_ALIVE_SECONDS, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+				new ThreadFactory() {
+					private final AtomicInteger count = new AtomicInteger(1);
+
+					@Override
+					public Thread newThread(@NonNull Runnable r) {
+						return new Thread(r, "SambaPlayer #" + count.getAndIncrement());
+					}
+				});
+
+		executor.allowCoreThreadTimeOut(true);
+	}
+
+	private SambaExecutor() {}
+
+	/**
+	 * Retrieves the shared executor, e.g. for <code>AsyncTask.executeOnExecutor()</code>.
+	 *
+	 * @return The shared executor
+	 */
+	public static @NonNull Executor getExecutor() {
+		return executor;
+	}
+
+	/**
+	 * Sets how many tasks may run at the same time.
+	 *
+	 * @param maxConcurrency The concurrency limit (at least 1)
+	 */
+	public static synchronized void setMaxConcurrency(int maxConcurrency) {
+		if (maxConcurrency < 1)
+			throw new IllegalArgumentException("Concurrency limit must be at least 1.");
+
+		// core size must never exceed max size during the change
+		if (maxConcurrency > executor.getMaximumPoolSize()) {
+			executor.setMaximumPoolSize(maxConcurrency);
+			executor.setCorePoolSize(maxConcurrency);
+		}
+		else {
+			executor.setCorePoolSize(maxConcurrency);
+			executor.setMaximumPoolSize(maxConcurrency);
+		}
+	}
+
+	public static int getMaxConcurrency() {
+		return executor.getMaximumPoolSize();
+	}
+
+	/**
+	 * Runs a task in background.
+	 *
+	 * @param task The task to run
+	 */
+	public static void execute(@NonNull Runnable task) {
+		executor.execute(task);
+	}
+
+	/**
+	 * Runs a task on the main thread (e.g. to deliver callbacks).
+	 *
+	 * @param task The task to run
+	 */
+	public static void runOnMainThread(@NonNull Runnable task) {
+		if (Looper.myLooper() == Looper.getMainLooper())
+			task.run();
+		else mainHandler.post(SambaMetrics.wrapUiHop(task));
+	}
+
+	/**
+	 * Posts a task to the main thread, always deferring its execution.
+	 *
+	 * @param task The task to run
+	 */
+	public static void postOnMainThread(@NonNull Runnable task) {
+		mainHandler.post(SambaMetrics.wrapUiHop(task));
+	}
+}
@@ -0,0 +1,226 @@
+package com.sambatech.player.utils;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.util.LruCache;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.Charset;
+import java.util.Collections;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Shared HTTP layer for every SDK request (media API, tracking, captions, etc.).
+ *
+ * Connections are kept alive and reused (responses are always fully consumed and closed,
+ * never disconnected), responses are gzip/deflate compressed and revalidated through
+ * ETag/If-None-Match when the server supports it.
+ *
+ * All methods are blocking, call them from a background thread (see {@link SambaExecutor}).
+ */
+public final class SambaHttpClient {
+
+	public static final int DEFAULT_CONNECT_TIMEOUT = 10000;
+	public static final int DEFAULT_READ_TIMEOUT = 15000;
+
+	private static final int ETAG_CACHE_SIZE = 1024 * 1024;
+	private static final int BUFFER_SIZE = 8192;
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+	private static final LruCache<String, Response> etagCache = new LruCache<String, Response>(ETAG_CACHE_SIZE) {
+		@Override
+		protected int sizeOf(String key, Response value) {
+			return value.body.length;
+		}
+	};
+
+	private static volatile int connectTimeout = DEFAULT_CONNECT_TIMEOUT;
+	private static volatile int readTimeout = DEFAULT_READ_TIMEOUT;
+
+	private SambaHttpClient() {}
+
+	/**
+	 * @param timeout Connect timeout in milliseconds
+	 */
+	public static void setConnectTimeout(int timeout) {
+		connectTimeout = timeout;
+	}
+
+	public static int getConnectTimeout() {
+		return connectTimeout;
+	}
+
+	/**
+	 * @param timeout Read timeout in milliseconds
+	 */
+	public static void setReadTimeout(int timeout) {
+		readTimeout = timeout;
+	}
+
+	public static int getReadTimeout() {
+		return readTimeout;
+	}
+
+	/**
+	 * Creates a connection with the SDK default settings (timeouts, compression, keep-alive).
+	 *
+	 * @param url The URL to connect to
+	 * @return A non-connected connection
+	 * @throws IOException If URL is invalid or connection could not be created
+	 */
+	public static @NonNull HttpURLConnection open(@NonNull String url) throws IOException {
+		HttpURLConnection con = (HttpURLConnection)new URL(url).openConnection();
+
+		con.setConnectTimeout(connectTimeout);
+		con.setReadTimeout(readTimeout);
+		con.setRequestProperty("Connection", "keep-alive");
+
+		return con;
+	}
+
+	/**
+	 * Performs a GET request.
+	 *
+	 * @param url The URL to request
+	 * @return The server response
+	 * @throws IOException In case of network failure or non successful status code
+	 */
+	public static @NonNull Response get(@NonNull String url) throws IOException {
+		return get(url, Collections.<String, String>emptyMap());
+	}
+
+	/**
+	 * Performs a GET request.
+	 *
+	 * @param url The URL to request
+	 * @param headers Extra request headers
+	 * @return The server response
+	 * @throws IOException In case of network failure or non successful status code
+	 */
+	public static @NonNull Response get(@NonNull String url, @NonNull Map<String, String> headers) throws IOException {
+		HttpURLConnection con = open(url);
+
+		for (Map.Entry<String, String> kv : headers.entrySet())
+			con.setRequestProperty(kv.getKey(), kv.getValue());
+
+		return execute(con);
+	}
+
+	/**
+	 * Performs a request over a custom connection (must not be connected yet).
+	 *
+	 * @param con The connection
+	 * @return The server response
+	 * @throws IOException In case of network failure or non successful status code
+	 */
+	public static @NonNull Response execute(@NonNull HttpURLConnection con) throws IOException {
+		final String key = con.getURL().toString();
+		final boolean isGet = "GET".equals(con.getRequestMethod());
+		final Response cached = isGet ? etagCache.get(key) : null;
+
+		// setting it explicitly disables transparent decompression, so it's handled below
+		con.setRequestProperty("Accept-Encoding", "gzip, deflate");
+
+		if (cached != null)
+			con.setRequestProperty("If-None-Match", cached.etag);
+
+		int code = con.getResponseCode();
+
+		// 304 has no body
+		if (code == HttpURLConnection.HTTP_NOT_MODIFIED && cached != null)
+			return new Response(code, cached.body, cached.etag, true);
+
+		if (code < 200 || code > 299) {
+			drain(con.getErrorStream());
+			throw new IOException(String.format("Request failed with status %s: %s", code, key));
+		}
+
+		byte[] body = read(con.getInputStream(), con.getContentEncoding());
+		Response response = new Response(code, body, con.getHeaderField("ETag"), false);
+
+		if (isGet && response.etag != null)
+			etagCache.put(key, response);
+
+		return response;
+	}
+
+	/**
+	 * Discards revalidation data.
+	 */
+	public static void clearCache() {
+		etagCache.evictAll();
+	}
+
+	private static byte[] read(InputStream inputStream, String encoding) throws IOException {
+		if (inputStream == null)
+			return new byte[0];
+
+		InputStream in = inputStream;
+
+		if ("gzip".equalsIgnoreCase(encoding))
+			in = new GZIPInputStream(inputStream);
+		else if ("deflate".equalsIgnoreCase(encoding))
+			in = new InflaterInputStream(inputStream);
+
+		try {
+			ByteArrayOutputStream out = new ByteArrayOutputStream(BUFFER_SIZE);
+			byte[] buffer = new byte[BUFFER_SIZE];
+			int n;
+
+			while ((n = in.read(buffer)) != -1)
+				out.write(buffer, 0, n);
+
+			return out.toByteArray();
+		}
+		finally {
+			// closing (not disconnecting) returns the connection to the pool
+			in.close();
+		}
+	}
+
+	private static void drain(InputStream in) {
+		if (in == null) return;
+
+		try {
+			byte[] buffer = new byte[BUFFER_SIZE];
+
+			while (in.read(buffer) != -1);
+
+			in.close();
+		}
+		catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * Represents a server response.
+	 */
+	public static final class Response {
+		public final int code;
+		public final @NonNull byte[] body;
+		public final @Nullable String etag;
+		/** Whether the body came from a previous response (status 304). */
+		public final boolean notModified;
+
+		Response(int code, @NonNull byte[] body, @Nullable String etag, boolean notModified) {
+			this.code = code;
+			this.body = body;
+			this.etag = etag;
+			this.notModified = notModified;
+		}
+
+		/**
+		 * @return The body as an UTF-8 string
+		 */
+		public @NonNull String string() {
+			return new String(body, UTF_8);
+		}
+	}
+}
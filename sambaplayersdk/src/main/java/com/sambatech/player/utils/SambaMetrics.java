@@ -0,0 +1,180 @@
+package com.sambatech.player.utils;
+
+import android.os.Looper;
+import android.support.annotation.NonNull;
+
+import com.sambatech.player.event.SambaPlayerListener;
+
+/**
+ * SDK instrumentation: time spent posting and handling player events and main thread stalls
+ * caused by SDK code (event dispatch, UI hops, plugin lifecycle).
+ *
+ * Measurements are reported to a sink (see <code>SambaMetricsCollector</code>), none by default.
+ * While no sink is set nothing is measured, so it is safe to leave it in production builds.
+ */
+public final class SambaMetrics {
+
+	public static final long DEFAULT_STALL_THRESHOLD_MS = 16;
+
+	/**
+	 * Main thread work measured by the SDK.
+	 */
+	public enum Section {
+		/** An event posted from the main thread (synchronous listeners included). */
+		EVENT_POST,
+		/** An event delivered to a <code>MAIN</code> listener. */
+		EVENT_DELIVERY,
+		/** A task handed over to the main thread. */
+		UI_HOP,
+		/** A plugin being loaded. */
+		PLUGIN_LOAD,
+		/** A plugin being notified of the internal player creation. */
+		PLUGIN_INTERNAL_PLAYER_CREATED
+	}
+
+	/**
+	 * Receives measurements, possibly from multiple threads at the same time.
+	 * Implementations should be quick and not allocate, as they run along with the measured code.
+	 */
+	public interface Sink {
+		/**
+		 * An event was posted.
+		 * @param type Event type
+		 * @param durationNs Time spent by the post (synchronous listeners and enqueueing) in nanoseconds
+		 */
+		void onEventPosted(@NonNull SambaPlayerListener.EventType type, long durationNs);
+
+		/**
+		 * A listener handled an event (any delivery mode).
+		 * @param listener The listener
+		 * @param type Event type
+		 * @param durationNs Time spent by the listener in nanoseconds
+		 */
+		void onEventHandled(@NonNull Object listener, @NonNull SambaPlayerListener.EventType type, long durationNs);
+
+		/**
+		 * SDK code blocked the main thread longer than the stall threshold.
+		 * @param section What was running
+		 * @param source Who was running (e.g. listener, plugin, task)
+		 * @param durationNs Time blocked in nanoseconds
+		 */
+		void onMainThreadStall(@NonNull Section section, @NonNull Object source, long durationNs);
+	}
+
+	private static volatile Sink sink;
+	private static volatile long stallThresholdNs = DEFAULT_STALL_THRESHOLD_MS * 1000000L;
+
+	private SambaMetrics() {}
+
+	/**
+	 * Sets where measurements go.
+	 * @param value The sink or null to stop measuring
+	 */
+	public static void setSink(Sink value) {
+		sink = value;
+	}
+
+	public static Sink getSink() {
+		return sink;
+	}
+
+	/**
+	 * Sets how long SDK code may block the main thread before it is reported as a stall.
+	 * @param millis Threshold in milliseconds (defaults to a frame, <code>DEFAULT_STALL_THRESHOLD_MS</code>)
+	 */
+	public static void setStallThreshold(long millis) {
+		stallThresholdNs = millis * 1000000L;
+	}
+
+	public static long getStallThreshold() {
+		return stallThresholdNs / 1000000L;
+	}
+
+	public static boolean isEnabled() {
+		return sink != null;
+	}
+
+	/**
+	 * Starts measuring.
+	 * @return Start time to be passed to the end methods or 0 if not measuring
+	 */
+	public static long start() {
+		return sink != null ? System.nanoTime() : 0;
+	}
+
+	/**
+	 * Ends an event post measurement.
+	 * @param type Event type
+	 * @param start What <code>start()</code> returned
+	 */
+	public static void endPost(@NonNull SambaPlayerListener.EventType type, long start) {
+		Sink s = sink;
+
+		if (start == 0 || s == null)
+			return;
+
+		long duration = System.nanoTime() - start;
+
+		s.onEventPosted(type, duration);
+		checkStall(s, Section.EVENT_POST, type, duration);
+	}
+
+	/**
+	 * Ends a listener measurement.
+	 * @param listener The listener
+	 * @param type Event type
+	 * @param start What <code>start()</code> returned
+	 */
+	public static void endHandle(@NonNull Object listener, @NonNull SambaPlayerListener.EventType type, long start) {
+		Sink s = sink;
+
+		if (start == 0 || s == null)
+			return;
+
+		s.onEventHandled(listener, type, System.nanoTime() - start);
+	}
+
+	/**
+	 * Ends a main thread section measurement, reporting it if it took too long.
+	 * @param section What ran
+	 * @param source Who ran
+	 * @param start What <code>start()</code> returned
+	 */
+	public static void endSection(@NonNull Section section, @NonNull Object source, long start) {
+		Sink s = sink;
+
+		if (start == 0 || s == null)
+			return;
+
+		checkStall(s, section, source, System.nanoTime() - start);
+	}
+
+	/**
+	 * Wraps a task meant to run on the main thread, measuring it as a UI hop.
+	 * @param task The task
+	 * @return The measuring task or the task itself if not measuring
+	 */
+	static @NonNull Runnable wrapUiHop(@NonNull final Runnable task) {
+		if (sink == null)
+			return task;
+
+		return new Runnable() {
+			@Override
+			public void run() {
+				long start = start();
+
+				try {
+					task.run();
+				}
+				finally {
+					endSection(Section.UI_HOP, task, start);
+				}
+			}
+		};
+	}
+
+	private static void checkStall(Sink s, Section section, Object source, long duration) {
+		if (duration > stallThresholdNs && Looper.myLooper() == Looper.getMainLooper())
+			s.onMainThreadStall(section, source, duration);
+	}
+}
@@ -0,0 +1,139 @@
+package com.sambatech.player.utils;
+
+import android.support.annotation.NonNull;
+
+import com.sambatech.player.event.SambaPlayerListener;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Metrics sink aggregating measurements in memory, to be read (e.g. logged or uploaded) by the app.
+ *
+ * Post durations are kept as histograms per event type, with power of two buckets from 1 µs on
+ * (percentiles are approximated by their bucket upper bound). Listener time is totaled per class.
+ */
+public class SambaMetricsCollector implements SambaMetrics.Sink {
+
+	private static final int BUCKETS = 32;
+	private static final SambaPlayerListener.EventType[] types = SambaPlayerListener.EventType.values();
+	private static final SambaMetrics.Section[] sections = SambaMetrics.Section.values();
+
+	private final long[][] postHistograms = new long[types.length][BUCKETS];
+	private final long[] postCounts = new long[types.length];
+	private final Map<Class<?>, long[]> listenerTimes = new HashMap<>();
+	private final long[] stallCounts = new long[sections.length];
+	private final long[] maxStalls = new long[sections.length];
+
+	@Override
+	public synchronized void onEventPosted(@NonNull SambaPlayerListener.EventType type, long durationNs) {
+		++postHistograms[type.ordinal()][getBucket(durationNs)];
+		++postCounts[type.ordinal()];
+	}
+
+	@Override
+	public synchronized void onEventHandled(@NonNull Object listener, @NonNull SambaPlayerListener.EventType type,
+											long durationNs) {
+		long[] time = listenerTimes.get(listener.getClass());
+
+		if (time == null)
+			listenerTimes.put(listener.getClass(), time = new long[2]);
+
+		++time[0];
+		time[1] += durationNs;
+	}
+
+	@Override
+	public synchronized void onMainThreadStall(@NonNull SambaMetrics.Section section, @NonNull Object source,
+											   long durationNs) {
+		++stallCounts[section.ordinal()];
+		maxStalls[section.ordinal()] = Math.max(maxStalls[section.ordinal()], durationNs);
+	}
+
+	/**
+	 * @param type Event type
+	 * @return Number of posted events of the type
+	 */
+	public synchronized long getPostCount(@NonNull SambaPlayerListener.EventType type) {
+		return postCounts[type.ordinal()];
+	}
+
+	/**
+	 * Retrieves a percentile of the time spent posting events of a type.
+	 * @param type Event type
+	 * @param percentile Percentile (e.g. 0.99)
+	 * @return Upper bound of the percentile in nanoseconds or 0 if no event was posted
+	 */
+	public synchronized long getPostPercentile(@NonNull SambaPlayerListener.EventType type, double percentile) {
+		long[] histogram = postHistograms[type.ordinal()];
+		long count = postCounts[type.ordinal()];
+
+		if (count == 0)
+			return 0;
+
+		long rank = (long)Math.ceil(percentile * count);
+		long sum = 0;
+
+		for (int i = 0; i < BUCKETS; ++i) {
+			sum += histogram[i];
+
+			if (sum >= rank)
+				return 1000L << i;
+		}
+
+		return 1000L << (BUCKETS - 1);
+	}
+
+	/**
+	 * @param listenerClass Listener class
+	 * @return Number of events handled by listeners of the class
+	 */
+	public synchronized long getHandledCount(@NonNull Class<?> listenerClass) {
+		long[] time = listenerTimes.get(listenerClass);
+		return time != null ? time[0] : 0;
+	}
+
+	/**
+	 * @param listenerClass Listener class
+	 * @return Total time spent by listeners of the class in nanoseconds
+	 */
+	public synchronized long getHandledTime(@NonNull Class<?> listenerClass) {
+		long[] time = listenerTimes.get(listenerClass);
+		return time != null ? time[1] : 0;
+	}
+
+	public synchronized long getStallCount(@NonNull SambaMetrics.Section section) {
+		return stallCounts[section.ordinal()];
+	}
+
+	/**
+	 * @param section Section
+	 * @return Longest stall of the section in nanoseconds
+	 */
+	public synchronized long getMaxStall(@NonNull SambaMetrics.Section section) {
+		return maxStalls[section.ordinal()];
+	}
+
+	public synchronized void reset() {
+		for (long[] histogram : postHistograms)
+			Arrays.fill(histogram, 0);
+
+		Arrays.fill(postCounts, 0);
+		Arrays.fill(stallCounts, 0);
+		Arrays.fill(maxStalls, 0);
+		listenerTimes.clear();
+	}
+
+	/**
+	 * Bucket i holds durations up to 2^i µs.
+	 */
+	private static int getBucket(long durationNs) {
+		long us = (durationNs + 999) / 1000;
+
+		if (us <= 1)
+			return 0;
+
+		return Math.min(64 - Long.numberOfLeadingZeros(us - 1), BUCKETS - 1);
+	}
+}
@@ -0,0 +1,341 @@
+package com.sambatech.player.utils;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.support.annotation.NonNull;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Shared SDK scheduler running delayed and periodic tasks (e.g. player progress, error countdowns,
+ * tracking heartbeats and flushes) on the main thread.
+ *
+ * A single wake-up is scheduled at a time (for the earliest due task), so no threads are involved
+ * and the scheduler is idle when there are no tasks. Tasks due within <code>COALESCE_WINDOW_MS</code>
+ * of a wake-up run together with it.
+ *
+ * Tasks may be scheduled and cancelled from any thread, long running work should be handed over
+ * to <code>SambaExecutor</code>.
+ */
+public final class SambaScheduler {
+
+	/**
+	 * How early a task may run to share a wake-up with another due one (in milliseconds).
+	 */
+	public static final long COALESCE_WINDOW_MS = 10;
+
+	/**
+	 * Time source and wake-up scheduling of a scheduler.
+	 */
+	public interface Driver {
+		/**
+		 * @return Current time in milliseconds (monotonic)
+		 */
+		long now();
+
+		/**
+		 * Schedules a wake-up, replacing the pending one.
+		 * @param wakeUp What to run
+		 * @param delayMs Delay in milliseconds
+		 */
+		void schedule(@NonNull Runnable wakeUp, long delayMs);
+
+		void cancel(@NonNull Runnable wakeUp);
+	}
+
+	private static SambaScheduler instance;
+
+	private final Driver driver;
+	private final List<Task> tasks = new ArrayList<>();
+	private final Runnable wakeUp = new Runnable() {
+		@Override
+		public void run() {
+			tick();
+		}
+	};
+	private long nextWakeUp = Long.MAX_VALUE;
+
+	/**
+	 * @param driver Time source (e.g. <code>VirtualDriver</code> for tests)
+	 */
+	public SambaScheduler(@NonNull Driver driver) {
+		this.driver = driver;
+	}
+
+	/**
+	 * @return The scheduler shared by the SDK, running on the main thread
+	 */
+	public static synchronized @NonNull SambaScheduler getInstance() {
+		if (instance == null)
+			instance = new SambaScheduler(new HandlerDriver());
+
+		return instance;
+	}
+
+	/**
+	 * Runs a task once.
+	 *
+	 * @param task The task to run
+	 * @param delayMs Delay before running in milliseconds
+	 * @return A token to cancel the task
+	 */
+	public @NonNull Task schedule(@NonNull Runnable task, long delayMs) {
+		return add(new Task(task, 0), delayMs);
+	}
+
+	/**
+	 * Runs a task periodically, the first run happens right away (on the next wake-up).
+	 *
+	 * @param task The task to run
+	 * @param intervalMs Interval between runs in milliseconds
+	 * @return A token to change the interval or to cancel the task
+	 */
+	public @NonNull Task schedulePeriodic(@NonNull Runnable task, long intervalMs) {
+		return schedulePeriodic(task, 0, intervalMs);
+	}
+
+	/**
+	 * Runs a task periodically.
+	 *
+	 * @param task The task to run
+	 * @param delayMs Delay before the first run in milliseconds
+	 * @param intervalMs Interval between runs in milliseconds
+	 * @return A token to change the interval or to cancel the task
+	 */
+	public @NonNull Task schedulePeriodic(@NonNull Runnable task, long delayMs, long intervalMs) {
+		if (intervalMs <= 0)
+			throw new IllegalArgumentException("Interval must be positive.");
+
+		return add(new Task(task, intervalMs), delayMs);
+	}
+
+	private Task add(Task t, long delayMs) {
+		synchronized (this) {
+			t.due = driver.now() + Math.max(delayMs, 0);
+			tasks.add(t);
+			reschedule();
+		}
+
+		return t;
+	}
+
+	private void tick() {
+		List<Task> due = new ArrayList<>();
+
+		synchronized (this) {
+			long now = driver.now();
+
+			nextWakeUp = Long.MAX_VALUE;
+
+			for (int i = tasks.size() - 1; i >= 0; --i) {
+				Task t = tasks.get(i);
+
+				if (t.due > now + COALESCE_WINDOW_MS)
+					continue;
+
+				due.add(t);
+
+				if (t.interval == 0)
+					tasks.remove(i);
+				// keeps the pace, unless late by more than an interval
+				else t.due = Math.max(t.due + t.interval, now + 1);
+			}
+
+			reschedule();
+		}
+
+		// in scheduling order
+		for (int i = due.size() - 1; i >= 0; --i) {
+			Task t = due.get(i);
+
+			if (!t.isCancelled)
+				t.task.run();
+		}
+	}
+
+	private void remove(Task t) {
+		synchronized (this) {
+			tasks.remove(t);
+			reschedule();
+		}
+	}
+
+	private synchronized void update(Task t, long intervalMs) {
+		if (t.isCancelled || t.interval == intervalMs)
+			return;
+
+		t.due += intervalMs - t.interval;
+		t.interval = intervalMs;
+		reschedule();
+	}
+
+	/**
+	 * Schedules a wake-up for the earliest due task (if it changed).
+	 * Must be called holding the scheduler lock.
+	 */
+	private void reschedule() {
+		long next = Long.MAX_VALUE;
+
+		for (Task t : tasks)
+			next = Math.min(next, t.due);
+
+		if (next == nextWakeUp)
+			return;
+
+		nextWakeUp = next;
+
+		if (next == Long.MAX_VALUE)
+			driver.cancel(wakeUp);
+		else driver.schedule(wakeUp, Math.max(next - driver.now(), 0));
+	}
+
+	/**
+	 * A scheduled task, also its cancellation token.
+	 */
+	public final class Task {
+		private final Runnable task;
+		private long interval;
+		private long due;
+		private volatile boolean isCancelled;
+
+		Task(Runnable task, long interval) {
+			this.task = task;
+			this.interval = interval;
+		}
+
+		/**
+		 * Changes how often a periodic task runs (from its last run on).
+		 * @param intervalMs Interval between runs in milliseconds
+		 */
+		public void setInterval(long intervalMs) {
+			if (intervalMs <= 0)
+				throw new IllegalArgumentException("Interval must be positive.");
+
+			if (!isPeriodic())
+				throw new IllegalStateException("Task is not periodic.");
+
+			update(this, intervalMs);
+		}
+
+		public long getInterval() {
+			synchronized (SambaScheduler.this) {
+				return interval;
+			}
+		}
+
+		public boolean isPeriodic() {
+			synchronized (SambaScheduler.this) {
+				return interval > 0;
+			}
+		}
+
+		/**
+		 * Stops running the task, it is not run anymore even if already due.
+		 */
+		public void cancel() {
+			isCancelled = true;
+			remove(this);
+		}
+
+		public boolean isCancelled() {
+			return isCancelled;
+		}
+	}
+
+	/**
+	 * Drives a scheduler through the main thread looper.
+	 */
+	private static class HandlerDriver implements Driver {
+		private final Handler handler = new Handler(Looper.getMainLooper());
+
+		@Override
+		public long now() {
+			return SystemClock.uptimeMillis();
+		}
+
+		@Override
+		public void schedule(@NonNull Runnable wakeUp, long delayMs) {
+			handler.removeCallbacks(wakeUp);
+			handler.postDelayed(wakeUp, delayMs);
+		}
+
+		@Override
+		public void cancel(@NonNull Runnable wakeUp) {
+			handler.removeCallbacks(wakeUp);
+		}
+	}
+
+	/**
+	 * Drives a scheduler through virtual time (e.g. for JVM tests), wake-ups run on the thread advancing it.
+	 */
+	public static class VirtualDriver implements Driver {
+		private long time;
+		private long wakeUpTime;
+		private Runnable pending;
+		private int wakeUpCount;
+
+		@Override
+		public synchronized long now() {
+			return time;
+		}
+
+		@Override
+		public synchronized void schedule(@NonNull Runnable wakeUp, long delayMs) {
+			pending = wakeUp;
+			wakeUpTime = time + delayMs;
+		}
+
+		@Override
+		public synchronized void cancel(@NonNull Runnable wakeUp) {
+			pending = null;
+		}
+
+		/**
+		 * Moves time forward, running every wake-up due until then.
+		 * @param ms Amount of time in milliseconds
+		 */
+		public void advance(long ms) {
+			long end;
+
+			synchronized (this) {
+				end = time + ms;
+			}
+
+			while (true) {
+				Runnable r;
+
+				synchronized (this) {
+					if (pending == null || wakeUpTime > end)
+						break;
+
+					r = pending;
+					time = wakeUpTime;
+					pending = null;
+					++wakeUpCount;
+				}
+
+				r.run();
+			}
+
+			synchronized (this) {
+				time = end;
+			}
+		}
+
+		/**
+		 * @return Whether a wake-up is pending (i.e. the scheduler is not idle)
+		 */
+		public synchronized boolean hasPendingWakeUp() {
+			return pending != null;
+		}
+
+		/**
+		 * @return Number of wake-ups run so far
+		 */
+		public synchronized int getWakeUpCount() {
+			return wakeUpCount;
+		}
+	}
+}
@@ -0,0 +1,100 @@
+package com.sambatech.player.utils;
+
+import android.content.Context;
+import android.graphics.drawable.Drawable;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.bumptech.glide.Glide;
+import com.bumptech.glide.load.engine.DiskCacheStrategy;
+import com.bumptech.glide.load.resource.bitmap.DownsampleStrategy;
+import com.bumptech.glide.request.RequestOptions;
+import com.bumptech.glide.request.target.SimpleTarget;
+import com.bumptech.glide.request.transition.Transition;
+
+/**
+ * Loads media thumbnails apart from media data requests.
+ *
+ * Images are downsampled to the requested size and kept in a size-bounded memory cache
+ * and in a disk cache (both shared with the rest of the SDK images), so repeated loads
+ * do not hit the network.
+ *
+ * Must be called from the main thread, callbacks are also fired up on the main thread.
+ */
+public final class ThumbnailLoader {
+
+	private ThumbnailLoader() {}
+
+	/**
+	 * Starts loading a thumbnail.
+	 *
+	 * @param context Any context (its application context is used)
+	 * @param url The thumbnail URL
+	 * @param width Target width in pixels (the image will not be decoded larger than it)
+	 * @param height Target height in pixels
+	 * @param callback Listener for the loaded thumbnail
+	 * @return A handle to cancel the request
+	 */
+	public static @NonNull Request load(@NonNull Context context, @NonNull String url, int width, int height,
+										@NonNull final Callback callback) {
+		final Request request = new Request(context.getApplicationContext());
+
+		request.target = new SimpleTarget<Drawable>(width, height) {
+			@Override
+			public void onResourceReady(@NonNull Drawable resource, @Nullable Transition<? super Drawable> transition) {
+				if (!request.isCancelled)
+					callback.onThumbLoaded(resource);
+			}
+
+			@Override
+			public void onLoadFailed(@Nullable Drawable errorDrawable) {
+				if (!request.isCancelled)
+					callback.onThumbError(new Exception("Failed to load thumbnail."));
+			}
+		};
+
+		Glide.with(request.context)
+				.load(url)
+				.apply(new RequestOptions()
+						.downsample(DownsampleStrategy.AT_MOST)
+						.diskCacheStrategy(DiskCacheStrategy.RESOURCE))
+				.into(request.target);
+
+		return request;
+	}
+
+	/**
+	 * Listener for thumbnail loading.
+	 */
+	public interface Callback {
+		void onThumbLoaded(@NonNull Drawable thumb);
+		void onThumbError(@NonNull Exception e);
+	}
+
+	/**
+	 * A pending thumbnail load.
+	 */
+	public static final class Request {
+		private final Context context;
+		private SimpleTarget<Drawable> target;
+		private boolean isCancelled;
+
+		Request(Context context) {
+			this.context = context;
+		}
+
+		/**
+		 * Cancels the request, the callback will not be fired up anymore.
+		 */
+		public void cancel() {
+			if (isCancelled) return;
+
+			isCancelled = true;
+			Glide.with(context).clear(target);
+		}
+
+		public boolean isCancelled() {
+			return isCancelled;
+		}
+	}
+}
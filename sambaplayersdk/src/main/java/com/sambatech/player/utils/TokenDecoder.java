@@ -0,0 +1,115 @@
+package com.sambatech.player.utils;
+
+import java.util.Arrays;
+
+/**
+ * Decodes tokens sent by the player API (media data, STTM2 key, etc.).
+ *
+ * A token is a URL-safe Base64 payload wrapped by <code>delimiter</code> dummy characters
+ * on both sides, where the delimiter is derived from the media ID.
+ * Decoding works straight on the response bytes, no intermediate strings are built.
+ */
+public final class TokenDecoder {
+
+	private static final int[] ALPHABET = new int[256];
+
+	static {
+		Arrays.fill(ALPHABET, -1);
+
+		for (int i = 0; i < 26; ++i) {
+			ALPHABET['A' + i] = i;
+			ALPHABET['a' + i] = 26 + i;
+		}
+
+		for (int i = 0; i < 10; ++i)
+			ALPHABET['0' + i] = 52 + i;
+
+		// both URL-safe and standard alphabets
+		ALPHABET['-'] = ALPHABET['+'] = 62;
+		ALPHABET['_'] = ALPHABET['/'] = 63;
+	}
+
+	private TokenDecoder() {}
+
+	/**
+	 * Retrieves the token delimiter for a given media (its last digit followed only by letters).
+	 *
+	 * @param mediaId The media ID (may be null)
+	 * @return The delimiter or zero when there's no media ID
+	 */
+	public static int getDelimiter(String mediaId) {
+		if (mediaId == null)
+			return 0;
+
+		int i = mediaId.length();
+		char c;
+
+		while (--i >= 0) {
+			c = mediaId.charAt(i);
+
+			if (c >= '0' && c <= '9')
+				return c - '0';
+
+			if (!(c >= 'a' && c <= 'z' || c >= 'A' && c <= 'Z'))
+				break;
+		}
+
+		throw new IllegalArgumentException("Invalid media ID: " + mediaId);
+	}
+
+	/**
+	 * Decodes a delimited token.
+	 *
+	 * @param token The raw token bytes
+	 * @param delimiter Number of dummy characters on each side of the token
+	 * @return The decoded bytes
+	 */
+	public static byte[] decode(byte[] token, int delimiter) {
+		return decode(token, delimiter, token.length - 2*delimiter);
+	}
+
+	/**
+	 * Decodes Base64 (URL-safe or standard) data.
+	 * Padding is optional and characters out of the alphabet (e.g. line breaks) are skipped.
+	 *
+	 * @param src Encoded bytes
+	 * @param offset Where data begins
+	 * @param length Data length
+	 * @return The decoded bytes
+	 */
+	public static byte[] decode(byte[] src, int offset, int length) {
+		if (length <= 0)
+			return new byte[0];
+
+		byte[] out = new byte[length*3/4];
+		int end = offset + length;
+		int acc = 0;
+		int bits = 0;
+		int n = 0;
+		int b;
+		int v;
+
+		for (int i = offset; i < end; ++i) {
+			b = src[i] & 0xFF;
+
+			if (b == '=')
+				break;
+
+			v = ALPHABET[b];
+
+			if (v < 0)
+				continue;
+
+			acc = (acc << 6) | v;
+			bits += 6;
+
+			if (bits >= 8) {
+				bits -= 8;
+				out[n++] = (byte)(acc >> bits);
+				acc &= (1 << bits) - 1;
+			}
+		}
+
+		return n == out.length ? out : Arrays.copyOf(out, n);
+	}
+}
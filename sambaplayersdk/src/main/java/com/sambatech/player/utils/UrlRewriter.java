@@ -0,0 +1,85 @@
+package com.sambatech.player.utils;
+
+import android.support.annotation.NonNull;
+
+import com.sambatech.player.model.SambaMediaRequest;
+
+/**
+ * URL rewriting used while parsing media data (protocol, HDS fallback).
+ *
+ * Runs for every output, caption and live URL, so it scans the strings by hand instead
+ * of using regular expressions and returns the very same instance when there is nothing to rewrite.
+ */
+public final class UrlRewriter {
+
+	private static final String HDS_EXTENSION = ".f4m";
+	private static final String HLS_PLAYLIST = "playlist.m3u8";
+
+	private UrlRewriter() {}
+
+	/**
+	 * Replaces the URL scheme (HTTP or HTTPS) with the informed protocol.
+	 * URLs with any other scheme (or none) are kept untouched.
+	 *
+	 * @param url The URL
+	 * @param protocol The desired protocol
+	 * @return The rewritten URL
+	 */
+	public static @NonNull String normalizeProtocol(@NonNull String url, @NonNull SambaMediaRequest.Protocol protocol) {
+		int schemeLength = getHttpSchemeLength(url);
+
+		if (schemeLength == 0)
+			return url;
+
+		String scheme = protocol == SambaMediaRequest.Protocol.HTTPS ? "https" : "http";
+
+		if (url.startsWith(scheme) && schemeLength == scheme.length())
+			return url;
+
+		return scheme.concat(url.substring(schemeLength));
+	}
+
+	/**
+	 * Replaces an HDS manifest (e.g. <code>.../manifest.f4m</code>) with the equivalent HLS playlist
+	 * (<code>.../playlist.m3u8</code>).
+	 *
+	 * @param url The live URL
+	 * @return The rewritten URL
+	 */
+	public static @NonNull String replaceHdsManifest(@NonNull String url) {
+		int end = url.length() - HDS_EXTENSION.length();
+
+		if (end <= 0 || !url.startsWith(HDS_EXTENSION, end))
+			return url;
+
+		int start = end;
+
+		// manifest name must be made of word characters
+		while (start > 0 && isWordChar(url.charAt(start - 1)))
+			--start;
+
+		if (start == end)
+			return url;
+
+		return url.substring(0, start).concat(HLS_PLAYLIST);
+	}
+
+	/**
+	 * @return Length of the "http" or "https" scheme name (case insensitive) followed by ':' or zero if there is none
+	 */
+	private static int getHttpSchemeLength(String url) {
+		if (!url.regionMatches(true, 0, "http", 0, 4))
+			return 0;
+
+		int i = 4;
+
+		if (url.length() > i && (url.charAt(i) == 's' || url.charAt(i) == 'S'))
+			++i;
+
+		return url.length() > i && url.charAt(i) == ':' ? i : 0;
+	}
+
+	private static boolean isWordChar(char c) {
+		return c >= 'a' && c <= 'z' || c >= 'A' && c <= 'Z' || c >= '0' && c <= '9' || c == '_';
+	}
+}
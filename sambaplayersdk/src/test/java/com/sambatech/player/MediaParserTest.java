@@ -0,0 +1,234 @@
+package com.sambatech.player;
+
+import com.sambatech.player.model.SambaMedia;
+import com.sambatech.player.model.SambaMediaConfig;
+import com.sambatech.player.model.SambaMediaRequest;
+
+import org.json.JSONObject;
+import org.junit.Test;
+
+import java.io.StringReader;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static org.junit.Assert.*;
+
+/**
+ * Ensures both media parsers (streaming and tree based) produce the same result.
+ *
+ * Local tests run the tree based parser on the JVM <code>org.json</code>, which does not coerce
+ * values the way Android's does: <code>getString()</code> fails for non strings (Android converts
+ * numbers, booleans and null to text) and <code>optString()</code> returns the fallback for null
+ * (Android returns "null"). The parity corpus only has values both agree on, the Android semantics
+ * (followed by the streaming parser) are asserted explicitly.
+ */
+public class MediaParserTest {
+
+	private static final String PROJECT = "'project':{'id':12,'playerHash':'abc123','defaultOutput':'480p'}";
+	private static final String API_CONFIG = "'apiConfig':{'sttm':{'url':'http://sttm.test/c.gif','key':'k1'},'sttm2':{'key':'k2'}}";
+	private static final String PLAYER_CONFIG = "'playerConfig':{'theme':'ff0000','autoplay':true}";
+
+	private static final String[] CORPUS = {
+			// VOD with every delivery type, captions, ads and DRM
+			"{'id':'m1','qualifier':'VIDEO','title':'Samba','clientId':3,'categoryId':'7'," + PROJECT + ',' + API_CONFIG + ',' + PLAYER_CONFIG + ',' +
+					"'thumbnails':[{'url':'http://thumb.test/1.jpg','width':640},{'url':'http://thumb.test/2.jpg'}]," +
+					"'advertisings':[{'adServer':'DFP','tagVast':'http://ads.test/vast'},{'adServer':'other'}]," +
+					"'playerSecurity':{'rootedDevices':'true','drmSecurity':{'widevineSignatureURL':'http://drm.test/wv','crmId':'crm','accountId':'acc','contentId':'cnt','applicationId':'app','provider':'SAMBA_DRM'}}," +
+					"'captions':[{'url':'http://cap.test/pt.vtt','fileInfo':{'captionLanguage':'PT_BR','closedCaption':false,'autoGenerated':true}}," +
+					"{'url':'http://cap.test/en.vtt','fileInfo':{'captionLanguage':'en_US','closedCaption':true}}]," +
+					"'deliveryRules':[" +
+					"{'urlType':'PROGRESSIVE','outputs':[{'outputName':'240p','url':'http://cdn.test/240.mp4','fileInfo':{'duration':12000,'bitrate':400}}," +
+					"{'outputName':'480p','url':'http://cdn.test/480.mp4','fileInfo':{'duration':12000,'bitrate':800}}," +
+					"{'outputName':'_RAW','url':'http://cdn.test/raw.mp4','fileInfo':{'duration':12000,'bitrate':9000}}]}," +
+					"{'urlType':'HLS','outputs':[{'outputName':'abr_hls','url':'http://cdn.test/m.m3u8','fileInfo':{'duration':12000.0,'bitrate':'1000'}}]}," +
+					"{'urlType':'unknown'}," +
+					"{'urlType':'DASH','outputs':[{'outputName':'abr','url':'https://cdn.test/m.mpd','fileInfo':{'duration':12001,'bitrate':1200}}]}," +
+					"{'urlType':'HLS','outputs':[{'outputName':'bogus'}]}]}",
+
+			// progressive only, default output lookup
+			"{'qualifier':'video','title':'Progressive'," + PROJECT + ",'apiConfig':{},'playerConfig':{}," +
+					"'deliveryRules':[{'urlType':'progressive','outputs':[" +
+					"{'outputName':'720p','url':'http://cdn.test/720.mp4','fileInfo':{'duration':5000,'bitrate':1500}}," +
+					"{'outputName':'480p','url':'http://cdn.test/480.mp4','fileInfo':{'duration':5000,'bitrate':800}}," +
+					"{'outputName':'360p','url':'http://cdn.test/360.mp4','fileInfo':{'duration':5000,'bitrate':600}}]}]}",
+
+			// audio (ads ignored, even malformed)
+			"{'qualifier':'audio','title':'Audio'," + PROJECT + ",'apiConfig':{},'playerConfig':{'theme':'default'}," +
+					"'advertisings':['invalid']," +
+					"'deliveryRules':[{'urlType':'hls','outputs':[" +
+					"{'outputName':'abr','url':'http://cdn.test/a.mp3','fileInfo':{'duration':3000,'bitrate':128}}," +
+					"{'outputName':'abr_hls','url':'http://cdn.test/a.m3u8','fileInfo':{'duration':3000,'bitrate':128}}]}]}",
+
+			// live from HDS with backup and DVR (fields in arbitrary order)
+			"{'liveOutput':{'baseUrl':'http://live.test/stream/manifest.f4m','backupUrl':'http://backup.test/stream/b.f4m','dvr':'true','extra':{'a':[1,2]}}," +
+					"'qualifier':'live','title':'Live'," + API_CONFIG + ',' + PLAYER_CONFIG + ',' + PROJECT + ",'thumbnails':[{'url':null}]}",
+
+			// live DASH without DVR, non DFP ads
+			"{'qualifier':'LIVE','title':'Live 2','liveOutput':{'baseUrl':'https://live.test/stream.mpd'}," + PROJECT + ",'apiConfig':{},'playerConfig':{'theme':'#00ff00'}," +
+					"'advertisings':[{'adServer':'vast'}],'playerSecurity':{'drmSecurity':'none'}}",
+
+			// empty lists
+			"{'qualifier':'video','title':'Empty'," + PROJECT + ",'apiConfig':{},'playerConfig':{},'deliveryRules':[],'captions':[],'thumbnails':[],'advertisings':[]}",
+
+			// unsupported qualifier
+			"{'qualifier':'image','title':'Image'}",
+
+			// missing title
+			"{'qualifier':'video'," + PROJECT + ",'apiConfig':{},'playerConfig':{}}",
+
+			// missing project
+			"{'qualifier':'video','title':'No project','apiConfig':{},'playerConfig':{}}",
+
+			// STTM without STTM2
+			"{'qualifier':'video','title':'Sttm'," + PROJECT + ",'apiConfig':{'sttm':{}},'playerConfig':{}}",
+
+			// unknown output label
+			"{'qualifier':'video','title':'Label'," + PROJECT + ",'apiConfig':{},'playerConfig':{}," +
+					"'deliveryRules':[{'urlType':'hls','outputs':[{'outputName':'4k','url':'http://cdn.test/m.m3u8','fileInfo':{'duration':1,'bitrate':1}}]}]}",
+
+			// missing output file info
+			"{'qualifier':'video','title':'File info'," + PROJECT + ",'apiConfig':{},'playerConfig':{}," +
+					"'deliveryRules':[{'urlType':'hls','outputs':[{'outputName':'abr','url':'http://cdn.test/m.m3u8'}]}]}",
+
+			// missing closed caption flag
+			"{'qualifier':'video','title':'Captions'," + PROJECT + ",'apiConfig':{},'playerConfig':{}," +
+					"'captions':[{'url':'http://cap.test/pt.vtt','fileInfo':{'captionLanguage':'pt-br'}}]}",
+
+			// DFP ad without tag
+			"{'qualifier':'video','title':'Ads'," + PROJECT + ",'apiConfig':{},'playerConfig':{},'advertisings':[{'adServer':'dfp'}]}",
+
+			// invalid theme
+			"{'qualifier':'video','title':'Theme'," + PROJECT + ",'apiConfig':{},'playerConfig':{'theme':'zz'}}"
+	};
+
+	/**
+	 * Only values read the same way by both <code>org.json</code> flavors (see above).
+	 */
+	@Test
+	public void parse_streamingMatchesTree() throws Exception {
+		for (String payload : CORPUS) {
+			String json = payload.replace('\'', '"');
+
+			for (SambaMediaRequest.Protocol protocol : SambaMediaRequest.Protocol.values()) {
+				SambaMediaRequest request = new SambaMediaRequest("abc123", "m1");
+				request.protocol = protocol;
+
+				SambaMediaConfig tree = MediaParser.parse(new JSONObject(json), request);
+				SambaMediaConfig stream = MediaParser.parse(new StringReader(json), request);
+
+				assertEquals(json, dump(tree), dump(stream));
+			}
+		}
+	}
+
+	@Test
+	public void parse_fillsMedia() throws Exception {
+		SambaMediaRequest request = new SambaMediaRequest("abc123", "m1");
+		SambaMediaConfig media = MediaParser.parse(new StringReader(CORPUS[0].replace('\'', '"')), request);
+
+		assertNotNull(media);
+		assertEquals("dash", media.type);
+		assertEquals("https://cdn.test/m.mpd", media.url);
+		assertEquals(12.001f, media.duration, 0.0001f);
+		assertEquals(1, media.outputs.size());
+		assertEquals("Auto", media.outputs.get(0).label);
+		assertEquals(3, media.captions.size());
+		assertEquals("Inglês (CC)", media.captions.get(0).label);
+		assertEquals("Português (Auto)", media.captions.get(1).label);
+		assertTrue(media.captions.get(2).isDefault);
+		assertEquals("https://thumb.test/1.jpg", media.thumbURL);
+		assertEquals("http://ads.test/vast", media.adUrl);
+		assertEquals(0xFFFF0000, media.themeColor);
+		assertEquals("https://sttm.test/c.gif", media.sttmUrl);
+		assertEquals("k2", media.sttm2Key);
+		assertEquals("SAMBA_DRM", media.drmRequest.getProvider());
+		assertTrue(media.blockIfRooted);
+	}
+
+	@Test
+	public void parse_live() throws Exception {
+		SambaMediaRequest request = new SambaMediaRequest("abc123", "m1");
+		request.protocol = SambaMediaRequest.Protocol.HTTP;
+
+		SambaMediaConfig media = MediaParser.parse(new StringReader(CORPUS[3].replace('\'', '"')), request);
+
+		assertNotNull(media);
+		assertTrue(media.isLive);
+		assertTrue(media.isDvr);
+		assertEquals("hls", media.type);
+		assertEquals("http://live.test/stream/playlist.m3u8", media.url);
+		assertArrayEquals(new String[]{"http://backup.test/stream/playlist.m3u8"}, media.backupUrls);
+		assertNull(media.thumbURL);
+	}
+
+	@Test
+	public void parse_coercesLikeAndroid() throws Exception {
+		SambaMediaRequest request = new SambaMediaRequest("abc123", "m1");
+		String json = ("{'qualifier':'video','title':true,'id':12," + PROJECT + ",'playerConfig':{}," +
+				"'apiConfig':{'sttm':{'key':null},'sttm2':{'key':42}}," +
+				"'playerSecurity':{'drmSecurity':{'widevineSignatureURL':'http://drm.test/wv','crmId':null,'accountId':5,'contentId':false}}}")
+				.replace('\'', '"');
+		SambaMediaConfig media = MediaParser.parse(new StringReader(json), request);
+
+		assertNotNull(media);
+
+		// getString(): any scalar as text
+		assertEquals("true", media.title);
+		assertEquals("12", media.id);
+		assertEquals("42", media.sttm2Key);
+
+		// optString(): null as text, not the fallback
+		assertEquals("null", media.sttmKey);
+		assertEquals("null", media.drmRequest.getLicenseParam("CrmId"));
+		assertEquals("5", media.drmRequest.getLicenseParam("AccountId"));
+		assertEquals("false", media.drmRequest.getLicenseParam("ContentId"));
+		assertEquals("", media.drmRequest.getLicenseParam("ApplicationId"));
+	}
+
+	/**
+	 * Flattens every data field of a media (sessions are random, thus ignored).
+	 */
+	private static String dump(Object value) throws IllegalAccessException {
+		if (value == null || value instanceof String || value instanceof Number ||
+				value instanceof Boolean || value instanceof Enum)
+			return String.valueOf(value);
+
+		if (value instanceof Object[])
+			return dumpAll(Arrays.asList((Object[])value));
+
+		if (value instanceof Collection)
+			return dumpAll((Collection<?>)value);
+
+		if (value instanceof Map)
+			return new TreeMap<>((Map<?, ?>)value).toString();
+
+		Map<String, String> fields = new TreeMap<>();
+
+		for (Class<?> c = value.getClass(); c != Object.class; c = c.getSuperclass()) {
+			for (Field field : c.getDeclaredFields()) {
+				if (Modifier.isStatic(field.getModifiers()) || Modifier.isTransient(field.getModifiers()) ||
+						field.getName().equals("sessionId") || field.getName().equals("request") ||
+						field.getType() == SambaMedia.CaptionsConfig.class)
+					continue;
+
+				field.setAccessible(true);
+				fields.put(c.getSimpleName() + '.' + field.getName(), dump(field.get(value)));
+			}
+		}
+
+		return fields.toString();
+	}
+
+	private static String dumpAll(Collection<?> values) throws IllegalAccessException {
+		StringBuilder sb = new StringBuilder("[");
+
+		for (Object value : values)
+			sb.append(dump(value)).append(", ");
+
+		return sb.append(']').toString();
+	}
+}
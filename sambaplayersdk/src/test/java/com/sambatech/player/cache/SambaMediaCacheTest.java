@@ -0,0 +1,147 @@
+package com.sambatech.player.cache;
+
+import com.sambatech.player.model.SambaMedia;
+import com.sambatech.player.model.SambaMediaConfig;
+import com.sambatech.player.model.SambaMediaRequest;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.ArrayList;
+
+import static org.junit.Assert.*;
+
+public class SambaMediaCacheTest {
+
+	private static final String URL = "http://api.test/project/media";
+	private static final byte[] TOKEN = {1, 2, 3};
+
+	private File directory;
+
+	@Before
+	public void setUp() throws Exception {
+		directory = File.createTempFile("cache", null);
+		directory.delete();
+	}
+
+	@After
+	public void tearDown() {
+		File[] files = directory.listFiles();
+
+		if (files != null)
+			for (File file : files)
+				file.delete();
+
+		directory.delete();
+	}
+
+	@Test
+	public void lookup_countsEveryRequestOnce() throws Exception {
+		SambaMediaCache cache = new SambaMediaCache(directory);
+
+		assertNull(cache.lookup(URL));
+		cache.put(URL, TOKEN, newMedia());
+		assertNotNull(cache.lookup(URL));
+
+		// served from the server as well
+		cache.setEnabled(false);
+		assertNull(cache.lookup(URL));
+
+		SambaMediaCache.Stats stats = cache.getStats();
+
+		assertEquals(1, stats.memoryHits);
+		assertEquals(2, stats.misses);
+		assertEquals(3, stats.getRequests());
+		assertEquals(1 / 3f, stats.getHitRatio(), 1e-6);
+	}
+
+	@Test
+	public void lookupDisk_countsOnlyUsedEntries() throws Exception {
+		new SambaMediaCache(directory).put(URL, TOKEN, newMedia());
+
+		// e.g. after a process restart
+		SambaMediaCache cache = new SambaMediaCache(directory);
+
+		assertNull(cache.lookup(URL));
+
+		SambaMediaCache.Entry entry = cache.lookupDisk(URL);
+
+		assertNotNull(entry);
+		assertArrayEquals(TOKEN, entry.token);
+		assertEquals(0, cache.getStats().diskHits);
+
+		cache.putMemory(URL, entry, newMedia());
+
+		SambaMediaCache.Stats stats = cache.getStats();
+
+		assertEquals(1, stats.misses);
+		assertEquals(1, stats.diskHits);
+		assertEquals(0f, stats.getHitRatio(), 1e-6);
+		assertEquals(1f, stats.getCacheRatio(), 1e-6);
+		assertNotNull(cache.lookup(URL));
+	}
+
+	@Test
+	public void copyOf_sharesNoMutableData() throws Exception {
+		SambaMediaCache cache = new SambaMediaCache(directory);
+		SambaMediaConfig media = newMedia();
+
+		cache.put(URL, TOKEN, media);
+
+		SambaMediaConfig copy = cache.copyOf(cache.lookup(URL).media, new SambaMediaRequest("project", "media"));
+
+		copy.outputs.get(0).label = "changed";
+		copy.outputs.add(new SambaMedia.Output());
+		copy.captions.clear();
+		copy.backupUrls[0] = "changed";
+		copy.adsSettings.debugMode = true;
+
+		// neither the original nor the cached entry change
+		for (SambaMediaConfig m : new SambaMediaConfig[] {media, cache.lookup(URL).media}) {
+			assertEquals("480p", m.outputs.get(0).label);
+			assertEquals(1, m.outputs.size());
+			assertEquals(1, m.captions.size());
+			assertEquals("http://backup.test", m.backupUrls[0]);
+			assertFalse(m.adsSettings.debugMode);
+		}
+
+		assertNotEquals(media.sessionId, copy.sessionId);
+	}
+
+	@Test
+	public void getKey_separatesParsingOptions() throws Exception {
+		SambaMediaCache cache = new SambaMediaCache(directory);
+		SambaMediaRequest video = new SambaMediaRequest("project", "media");
+		SambaMediaRequest audio = new SambaMediaRequest("project", "media");
+		SambaMediaConfig media = newMedia();
+
+		audio.isStreamAudio = true;
+		media.request = video;
+		cache.put(SambaMediaCache.getKey(URL, video), TOKEN, media);
+
+		// parsed as audio only, must not be served from the video one
+		assertNotEquals(SambaMediaCache.getKey(URL, video), SambaMediaCache.getKey(URL, audio));
+		assertNull(cache.lookup(SambaMediaCache.getKey(URL, audio)));
+		assertNull(cache.lookupDisk(SambaMediaCache.getKey(URL, audio)));
+		assertNotNull(cache.lookup(SambaMediaCache.getKey(URL, new SambaMediaRequest("project", "media"))));
+
+		video.protocol = SambaMediaRequest.Protocol.HTTP;
+		assertNull(cache.lookup(SambaMediaCache.getKey(URL, video)));
+	}
+
+	private static SambaMediaConfig newMedia() {
+		SambaMediaConfig media = new SambaMediaConfig();
+		SambaMedia.Output output = new SambaMedia.Output();
+
+		output.url = "http://cdn.test/480.mp4";
+		output.label = "480p";
+		media.outputs = new ArrayList<>();
+		media.outputs.add(output);
+		media.captions = new ArrayList<>();
+		media.captions.add(new SambaMedia.Caption("http://cap.test/pt.vtt", "Português", "pt-BR", false, true));
+		media.backupUrls = new String[] {"http://backup.test"};
+		return media;
+	}
+}
@@ -0,0 +1,534 @@
+package com.sambatech.player.event;
+
+import com.sambatech.player.utils.SambaMetrics;
+import com.sambatech.player.utils.SambaMetricsCollector;
+
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class SambaEventBusTest {
+
+	private static final int THREADS = 4;
+	private static final int POSTS = 10000;
+
+	@Test
+	public void dispatch_onlyToHandlers() throws Exception {
+		final AtomicInteger plays = new AtomicInteger();
+		final AtomicInteger exits = new AtomicInteger();
+		SambaPlayerListener listener = new SambaPlayerListener() {
+			@Override
+			public void onPlay(SambaEvent event) {
+				plays.incrementAndGet();
+			}
+
+			@Override
+			public void onFullscreenExit(SambaEvent event) {
+				exits.incrementAndGet();
+			}
+		};
+
+		SambaEventBus.subscribe(listener);
+
+		try {
+			SambaEventBus.post(new SambaEvent(SambaPlayerListener.EventType.PLAY));
+			SambaEventBus.post(new SambaEvent(SambaPlayerListener.EventType.FULLSCREEN_EXIT));
+			SambaEventBus.post(new SambaEvent(SambaPlayerListener.EventType.PAUSE));
+		}
+		finally {
+			SambaEventBus.unsubscribe(listener);
+		}
+
+		SambaEventBus.post(new SambaEvent(SambaPlayerListener.EventType.PLAY));
+		assertEquals(1, plays.get());
+		assertEquals(1, exits.get());
+	}
+
+	@Test
+	public void reentrant_changesApplyOnNextPost() throws Exception {
+		final List<String> calls = new ArrayList<>();
+		final SambaPlayerListener late = new SambaPlayerListener() {
+			@Override
+			public void onPlay(SambaEvent event) {
+				calls.add("late");
+			}
+		};
+		final SambaPlayerListener last = new SambaPlayerListener() {
+			@Override
+			public void onPlay(SambaEvent event) {
+				calls.add("last");
+			}
+		};
+		SambaPlayerListener first = new SambaPlayerListener() {
+			@Override
+			public void onPlay(SambaEvent event) {
+				calls.add("first");
+				SambaEventBus.unsubscribe(this);
+				SambaEventBus.subscribe(late);
+				// nested post
+				SambaEventBus.post(new SambaEvent(EventType.PAUSE));
+			}
+
+			@Override
+			public void onPause(SambaEvent event) {
+				calls.add("pause");
+			}
+		};
+
+		SambaEventBus.subscribe(first);
+		SambaEventBus.subscribe(last);
+
+		try {
+			SambaEventBus.post(new SambaEvent(SambaPlayerListener.EventType.PLAY));
+			assertEquals("[first, last]", calls.toString());
+
+			calls.clear();
+			SambaEventBus.post(new SambaEvent(SambaPlayerListener.EventType.PLAY));
+			assertEquals("[last, late]", calls.toString());
+		}
+		finally {
+			SambaEventBus.unsubscribe(first);
+			SambaEventBus.unsubscribe(last);
+			SambaEventBus.unsubscribe(late);
+		}
+	}
+
+	@Test
+	public void stress_concurrentPostsWhileChurning() throws Exception {
+		final AtomicInteger received = new AtomicInteger();
+		final AtomicInteger churned = new AtomicInteger();
+		final AtomicBoolean isDone = new AtomicBoolean();
+		final CountDownLatch start = new CountDownLatch(1);
+		final List<Throwable> errors = new ArrayList<>();
+		SambaPlayerListener steady = new SambaPlayerListener() {
+			@Override
+			public void onProgress(SambaEvent event) {
+				received.incrementAndGet();
+			}
+		};
+		List<Thread> threads = new ArrayList<>();
+
+		SambaEventBus.subscribe(steady);
+
+		for (int i = 0; i < THREADS; ++i) {
+			threads.add(new Thread(new Runnable() {
+				@Override
+				public void run() {
+					await(start);
+
+					for (int j = 0; j < POSTS; ++j)
+						SambaEventBus.post(new SambaEvent(SambaPlayerListener.EventType.PROGRESS, j, POSTS));
+				}
+			}));
+
+			threads.add(new Thread(new Runnable() {
+				@Override
+				public void run() {
+					await(start);
+
+					while (!isDone.get()) {
+						SambaPlayerListener listener = new SambaPlayerListener() {
+							@Override
+							public void onProgress(SambaEvent event) {
+								churned.incrementAndGet();
+								// churns during dispatch as well
+								SambaEventBus.unsubscribe(this);
+							}
+						};
+
+						SambaEventBus.subscribe(listener);
+						Thread.yield();
+						SambaEventBus.unsubscribe(listener);
+					}
+				}
+			}));
+		}
+
+		for (Thread t : threads) {
+			t.setUncaughtExceptionHandler(new Thread.UncaughtExceptionHandler() {
+				@Override
+				public void uncaughtException(Thread t, Throwable e) {
+					synchronized (errors) {
+						errors.add(e);
+					}
+				}
+			});
+			t.start();
+		}
+
+		start.countDown();
+
+		try {
+			for (int i = 0; i < threads.size(); i += 2)
+				threads.get(i).join();
+		}
+		finally {
+			isDone.set(true);
+
+			for (Thread t : threads)
+				t.join();
+
+			SambaEventBus.unsubscribe(steady);
+		}
+
+		assertTrue(errors.toString(), errors.isEmpty());
+		assertEquals(THREADS * POSTS, received.get());
+
+		churned.set(0);
+		SambaEventBus.post(new SambaEvent(SambaPlayerListener.EventType.PROGRESS, 0, 0));
+		assertEquals(0, churned.get());
+	}
+
+	@Test
+	public void async_boundedQueue() throws Exception {
+		final CountDownLatch started = new CountDownLatch(1);
+		final CountDownLatch release = new CountDownLatch(1);
+		final CountDownLatch paused = new CountDownLatch(4);
+		final List<String> calls = new ArrayList<>();
+		SambaPlayerListener listener = new SambaPlayerListener() {
+			@Override
+			public void onPlay(SambaEvent event) {
+				started.countDown();
+				await(release);
+			}
+
+			@Override
+			public void onProgress(SambaEvent event) {
+				synchronized (calls) {
+					calls.add("progress" + event.getData());
+				}
+			}
+
+			@Override
+			public void onPause(SambaEvent event) {
+				synchronized (calls) {
+					calls.add("pause" + event.getData());
+				}
+
+				paused.countDown();
+			}
+		};
+		SambaEventBus.Subscription subscription = SambaEventBus.subscribe(listener,
+				SambaEventBus.DeliveryMode.BACKGROUND, 4, SambaEventBus.OverflowPolicy.COALESCE_LATEST);
+
+		try {
+			SambaEventBus.post(new SambaEvent(SambaPlayerListener.EventType.PLAY));
+			assertTrue(started.await(5, TimeUnit.SECONDS));
+
+			for (int i = 1; i <= 3; ++i)
+				SambaEventBus.post(new SambaEvent(SambaPlayerListener.EventType.PROGRESS, i, 3));
+
+			for (int i = 1; i <= 3; ++i)
+				SambaEventBus.post(new SambaEvent(SambaPlayerListener.EventType.PAUSE, i));
+
+			assertEquals(4, subscription.getQueueDepth());
+			assertEquals(2, subscription.getCoalescedCount());
+			assertEquals(0, subscription.getDroppedCount());
+
+			// overflow
+			SambaEventBus.post(new SambaEvent(SambaPlayerListener.EventType.PAUSE, 4));
+			assertEquals(4, subscription.getQueueDepth());
+			assertEquals(1, subscription.getDroppedCount());
+
+			release.countDown();
+			assertTrue(paused.await(5, TimeUnit.SECONDS));
+			assertEquals(0, subscription.getQueueDepth());
+
+			synchronized (calls) {
+				assertEquals("[pause1, pause2, pause3, pause4]", calls.toString());
+			}
+		}
+		finally {
+			release.countDown();
+			SambaEventBus.unsubscribe(listener);
+		}
+	}
+
+	@Test
+	public void async_coalescesProgress() throws Exception {
+		final CountDownLatch started = new CountDownLatch(1);
+		final CountDownLatch release = new CountDownLatch(1);
+		final CountDownLatch done = new CountDownLatch(1);
+		final List<String> calls = new ArrayList<>();
+		SambaPlayerListener listener = new SambaPlayerListener() {
+			@Override
+			public void onPlay(SambaEvent event) {
+				started.countDown();
+				await(release);
+			}
+
+			@Override
+			public void onProgress(SambaEvent event) {
+				calls.add("progress" + event.getData());
+			}
+
+			@Override
+			public void onFinish(SambaEvent event) {
+				calls.add("finish");
+				done.countDown();
+			}
+		};
+		SambaEventBus.Subscription subscription = SambaEventBus.subscribe(listener, SambaEventBus.DeliveryMode.ASYNC);
+
+		try {
+			SambaEventBus.post(new SambaEvent(SambaPlayerListener.EventType.PLAY));
+			assertTrue(started.await(5, TimeUnit.SECONDS));
+
+			for (int i = 1; i <= 100; ++i)
+				SambaEventBus.post(new SambaEvent(SambaPlayerListener.EventType.PROGRESS, i, 100));
+
+			SambaEventBus.post(new SambaEvent(SambaPlayerListener.EventType.FINISH));
+			assertEquals(2, subscription.getQueueDepth());
+			assertEquals(99, subscription.getCoalescedCount());
+
+			release.countDown();
+			assertTrue(done.await(5, TimeUnit.SECONDS));
+			assertEquals("[progress100, finish]", calls.toString());
+		}
+		finally {
+			release.countDown();
+			SambaEventBus.unsubscribe(listener);
+		}
+	}
+
+	@Test
+	public void progress_minDelta() throws Exception {
+		final List<Float> positions = new ArrayList<>();
+		SambaPlayerListener listener = new SambaPlayerListener() {
+			@Override
+			public void onProgress(SambaEvent event) {
+				positions.add(((SambaProgressEvent)event).getPosition());
+			}
+		};
+		SambaProgressEvent event = new SambaProgressEvent();
+
+		SambaEventBus.subscribe(listener, SambaEventBus.DeliveryMode.POSTING).setMinProgressDelta(1f);
+
+		try {
+			for (int i = 0; i <= 12; ++i)
+				SambaEventBus.post(event.set(i * .25f, 100f));
+
+			// seek back
+			SambaEventBus.post(event.set(.5f, 100f));
+		}
+		finally {
+			SambaEventBus.unsubscribe(listener);
+		}
+
+		assertEquals("[0.0, 1.0, 2.0, 3.0, 0.5]", positions.toString());
+	}
+
+	@Test
+	public void progress_minInterval() throws Exception {
+		final AtomicInteger count = new AtomicInteger();
+		SambaPlayerListener listener = new SambaPlayerListener() {
+			@Override
+			public void onProgress(SambaEvent event) {
+				count.incrementAndGet();
+			}
+		};
+		SambaProgressEvent event = new SambaProgressEvent();
+
+		SambaEventBus.subscribe(listener, SambaEventBus.DeliveryMode.POSTING).setMinProgressInterval(200);
+
+		try {
+			for (int i = 0; i < 100; ++i)
+				SambaEventBus.post(event.set(i, 100f));
+
+			assertEquals(1, count.get());
+			Thread.sleep(250);
+			SambaEventBus.post(event.set(100f, 100f));
+			assertEquals(2, count.get());
+		}
+		finally {
+			SambaEventBus.unsubscribe(listener);
+		}
+	}
+
+	@Test
+	public void progress_reusedEventIsCopiedWhenQueued() throws Exception {
+		final CountDownLatch started = new CountDownLatch(1);
+		final CountDownLatch release = new CountDownLatch(1);
+		final CountDownLatch done = new CountDownLatch(1);
+		final List<String> calls = new ArrayList<>();
+		SambaPlayerListener listener = new SambaPlayerListener() {
+			@Override
+			public void onPlay(SambaEvent event) {
+				started.countDown();
+				await(release);
+			}
+
+			@Override
+			public void onProgress(SambaEvent event) {
+				calls.add(event.getDataAll()[0] + "/" + event.getDataAll()[1]);
+			}
+
+			@Override
+			public void onFinish(SambaEvent event) {
+				done.countDown();
+			}
+		};
+		SambaProgressEvent event = new SambaProgressEvent();
+
+		SambaEventBus.subscribe(listener, SambaEventBus.DeliveryMode.ASYNC, 8, SambaEventBus.OverflowPolicy.DROP_OLDEST);
+
+		try {
+			SambaEventBus.post(new SambaEvent(SambaPlayerListener.EventType.PLAY));
+			assertTrue(started.await(5, TimeUnit.SECONDS));
+
+			for (int i = 1; i <= 3; ++i)
+				SambaEventBus.post(event.set(i, 10f));
+
+			event.set(0f, 0f);
+			SambaEventBus.post(new SambaEvent(SambaPlayerListener.EventType.FINISH));
+			release.countDown();
+			assertTrue(done.await(5, TimeUnit.SECONDS));
+			assertEquals("[1.0/10.0, 2.0/10.0, 3.0/10.0]", calls.toString());
+		}
+		finally {
+			release.countDown();
+			SambaEventBus.unsubscribe(listener);
+		}
+	}
+
+	@Test
+	public void playerBus_isolatedWithFanIn() throws Exception {
+		final List<String> calls = new ArrayList<>();
+		SambaPlayerEventBus busA = new SambaPlayerEventBus();
+		SambaPlayerEventBus busB = new SambaPlayerEventBus();
+		SambaPlayerListener listenerA = new SambaPlayerListener() {
+			@Override
+			public void onPlay(SambaEvent event) {
+				calls.add("a" + event.getData());
+			}
+		};
+		SambaPlayerListener global = new SambaPlayerListener() {
+			@Override
+			public void onPlay(SambaEvent event) {
+				calls.add("global" + event.getData());
+			}
+		};
+
+		busA.subscribe(listenerA);
+		SambaEventBus.subscribe(global);
+
+		try {
+			busA.post(new SambaEvent(SambaPlayerListener.EventType.PLAY, 1));
+			busB.post(new SambaEvent(SambaPlayerListener.EventType.PLAY, 2));
+
+			SambaEventBus.setFanInEnabled(false);
+			busB.post(new SambaEvent(SambaPlayerListener.EventType.PLAY, 3));
+			busA.post(new SambaEvent(SambaPlayerListener.EventType.PLAY, 4));
+		}
+		finally {
+			SambaEventBus.setFanInEnabled(true);
+			SambaEventBus.unsubscribe(global);
+		}
+
+		assertEquals("[a1, global1, global2, a4]", calls.toString());
+	}
+
+	@Test
+	public void metrics_measurePostsAndListeners() throws Exception {
+		SambaMetricsCollector metrics = new SambaMetricsCollector();
+		SambaPlayerEventBus bus = new SambaPlayerEventBus(false);
+		SambaPlayerListener slow = new SambaPlayerListener() {
+			@Override
+			public void onPlay(SambaEvent event) {
+				try {
+					Thread.sleep(5);
+				}
+				catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+		};
+
+		bus.subscribe(slow);
+		SambaMetrics.setSink(metrics);
+		SambaMetrics.setStallThreshold(1);
+
+		try {
+			bus.post(SambaEvent.of(SambaPlayerListener.EventType.PLAY));
+			bus.post(SambaEvent.of(SambaPlayerListener.EventType.PLAY));
+			bus.post(SambaEvent.of(SambaPlayerListener.EventType.PAUSE));
+		}
+		finally {
+			SambaMetrics.setSink(null);
+			SambaMetrics.setStallThreshold(SambaMetrics.DEFAULT_STALL_THRESHOLD_MS);
+		}
+
+		bus.post(SambaEvent.of(SambaPlayerListener.EventType.PLAY));
+
+		assertEquals(2, metrics.getPostCount(SambaPlayerListener.EventType.PLAY));
+		assertEquals(1, metrics.getPostCount(SambaPlayerListener.EventType.PAUSE));
+		assertTrue(metrics.getPostPercentile(SambaPlayerListener.EventType.PLAY, 0.5) >= 4000000);
+		assertEquals(2, metrics.getHandledCount(slow.getClass()));
+		assertTrue(metrics.getHandledTime(slow.getClass()) >= 10000000);
+		// JVM tests run as if on the main thread
+		assertEquals(2, metrics.getStallCount(SambaMetrics.Section.EVENT_POST));
+	}
+
+	@Test
+	public void post_allocatesNothing() throws Exception {
+		ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+
+		// allocation counters are only available on HotSpot based JVMs
+		if (!(threads instanceof com.sun.management.ThreadMXBean))
+			return;
+
+		com.sun.management.ThreadMXBean allocations = (com.sun.management.ThreadMXBean)threads;
+		final float[] sum = new float[1];
+		SambaPlayerEventBus bus = new SambaPlayerEventBus(false);
+		SambaProgressEvent progress = new SambaProgressEvent();
+
+		bus.subscribe(new SambaPlayerListener() {
+			@Override
+			public void onProgress(SambaEvent event) {
+				SambaProgressEvent e = (SambaProgressEvent)event;
+				sum[0] += e.getPosition() + e.getDuration() + e.getBufferedPosition();
+			}
+
+			@Override
+			public void onPlay(SambaEvent event) {
+				sum[0] += 1;
+			}
+		});
+
+		long before = 0;
+
+		// the second round runs warmed up
+		for (int round = 0; round < 2; ++round) {
+			before = allocations.getThreadAllocatedBytes(Thread.currentThread().getId());
+
+			for (int i = 0; i < 100000; ++i) {
+				bus.post(progress.set(i, 100000f, i + 10f));
+				bus.post(SambaEvent.of(SambaPlayerListener.EventType.PLAY));
+			}
+		}
+
+		long allocated = allocations.getThreadAllocatedBytes(Thread.currentThread().getId()) - before;
+
+		// tolerates the measurement itself
+		assertTrue("Allocated " + allocated + " bytes", allocated < 1024);
+		assertTrue(sum[0] > 0);
+	}
+
+	private static void await(CountDownLatch latch) {
+		try {
+			latch.await();
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+}
@@ -0,0 +1,118 @@
+package com.sambatech.player.event;
+
+import com.sambatech.player.model.SambaPlayerError;
+import com.sambatech.player.utils.SambaMetrics;
+import com.sambatech.player.utils.SambaMetricsCollector;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class SambaEventRecorderTest {
+
+	@Test
+	public void replay_reproducesRecordedEvents() throws Exception {
+		SambaPlayerEventBus source = new SambaPlayerEventBus(false);
+		ByteArrayOutputStream log = new ByteArrayOutputStream();
+		SambaEventRecorder recorder = new SambaEventRecorder(log);
+		SambaProgressEvent progress = new SambaProgressEvent();
+
+		recorder.start(source);
+		source.post(SambaEvent.of(SambaPlayerListener.EventType.PLAY));
+		source.post(progress.set(1.5f, 60f, 10f));
+		source.post(progress.set(1.75f, 60f, 12f));
+		// legacy payload
+		source.post(new SambaEvent(SambaPlayerListener.EventType.PROGRESS, 2f, 60f));
+		source.post(new SambaErrorEvent(SambaPlayerError.unknown));
+		source.post(new SambaErrorEvent(SambaPlayerError.unknown, 7, "Recorded", SambaPlayerError.Severity.critical));
+		source.post(SambaEvent.of(SambaPlayerListener.EventType.FULLSCREEN_EXIT));
+		recorder.stop();
+
+		// not recorded
+		source.post(SambaEvent.of(SambaPlayerListener.EventType.PAUSE));
+
+		SambaPlayerEventBus target = new SambaPlayerEventBus();
+		final List<String> calls = new ArrayList<>();
+		final List<String> globalCalls = new ArrayList<>();
+
+		SambaPlayerListener listener = new SambaPlayerListener() {
+			@Override
+			public void onPlay(SambaEvent event) {
+				calls.add("play");
+			}
+
+			@Override
+			public void onPause(SambaEvent event) {
+				calls.add("pause");
+			}
+
+			@Override
+			public void onProgress(SambaEvent event) {
+				SambaProgressEvent e = (SambaProgressEvent)event;
+				calls.add(e.getPosition() + "/" + e.getDuration() + "/" + e.getBufferedPosition());
+			}
+
+			@Override
+			public void onError(SambaEvent event) {
+				SambaErrorEvent error = (SambaErrorEvent)event;
+				calls.add(error.getError().name() + ":" + error.getCode() + ":" + error.getSeverity());
+			}
+
+			@Override
+			public void onFullscreenExit(SambaEvent event) {
+				calls.add("fullscreenExit");
+			}
+		};
+
+		SambaPlayerListener global = new SambaPlayerListener() {
+			@Override
+			public void onPlay(SambaEvent event) {
+				globalCalls.add("play");
+			}
+		};
+
+		target.subscribe(listener);
+		SambaEventBus.subscribe(global);
+
+		SambaMetricsCollector collector = new SambaMetricsCollector();
+		long postingTime;
+
+		try {
+			postingTime = new SambaEventReplayer(new ByteArrayInputStream(log.toByteArray()))
+					.replay(target, SambaEventReplayer.AS_FAST_AS_POSSIBLE, collector);
+		}
+		finally {
+			SambaEventBus.unsubscribe(global);
+		}
+
+		assertEquals("[play, 1.5/60.0/10.0, 1.75/60.0/12.0, 2.0/60.0/2.0, unknown:-1:minor, unknown:7:critical, fullscreenExit]",
+				calls.toString());
+		assertTrue(postingTime > 0);
+
+		// replayed values are not set on the shared error
+		assertEquals(-1, SambaPlayerError.unknown.getCode());
+		assertEquals(SambaPlayerError.Severity.minor, SambaPlayerError.unknown.getSeverity());
+
+		// per listener timings
+		assertEquals(7, collector.getHandledCount(listener.getClass()));
+		assertTrue(collector.getHandledTime(listener.getClass()) > 0);
+		assertEquals(2, collector.getPostCount(SambaPlayerListener.EventType.ERROR));
+
+		// measured and posted within the bus alone
+		assertNull(SambaMetrics.getSink());
+		assertNull(target.getMetricsSink());
+		assertTrue(globalCalls.isEmpty());
+		assertTrue(target.isFanIn());
+	}
+
+	@Test(expected = java.io.IOException.class)
+	public void replay_rejectsInvalidLog() throws Exception {
+		new SambaEventReplayer(new ByteArrayInputStream(new byte[]{1, 2, 3, 4, 5}))
+				.replay(new SambaPlayerEventBus(false), SambaEventReplayer.AS_FAST_AS_POSSIBLE);
+	}
+}
@@ -0,0 +1,110 @@
+package com.sambatech.player.plugins;
+
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.Format;
+import com.google.android.exoplayer2.Player;
+import com.google.android.exoplayer2.Timeline;
+import com.google.android.exoplayer2.analytics.AnalyticsListener;
+import com.google.android.exoplayer2.source.MediaSourceEventListener;
+import com.google.android.exoplayer2.util.MimeTypes;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class QoeCollectorTest {
+
+    private QoeCollector collector;
+    private final List<Long> rebuffers = new ArrayList<>();
+    private final List<Integer> bitrates = new ArrayList<>();
+
+    @Before
+    public void setUp() {
+        collector = new QoeCollector();
+        collector.addListener(new QoeCollector.Listener() {
+            @Override
+            public void onRebuffer(long duration) {
+                rebuffers.add(duration);
+            }
+
+            @Override
+            public void onBitrateSwitch(int bitrate) {
+                bitrates.add(bitrate);
+            }
+        });
+    }
+
+    @Test
+    public void getSnapshot_emptySession() {
+        QoeStats stats = collector.getSnapshot(1000);
+
+        assertEquals(-1, stats.startupTime);
+        assertEquals(0, stats.rebufferCount);
+        assertEquals(0, stats.playingTime);
+        assertEquals(-1, stats.averageBitrate);
+    }
+
+    @Test
+    public void getSnapshot_countsSession() {
+        collector.onDownstreamFormatChanged(at(0), video(1000000));
+        collector.onPlayerStateChanged(at(1000), true, Player.STATE_BUFFERING);
+        collector.onPlayerStateChanged(at(1200), true, Player.STATE_READY);
+        collector.onRenderedFirstFrame(at(1250), null);
+
+        // stall
+        collector.onPlayerStateChanged(at(2200), true, Player.STATE_BUFFERING);
+        collector.onPlayerStateChanged(at(2700), true, Player.STATE_READY);
+
+        collector.onDownstreamFormatChanged(at(3700), video(2000000));
+
+        // seeks are not stalls
+        collector.onSeekStarted(at(4000));
+        collector.onPlayerStateChanged(at(4000), true, Player.STATE_BUFFERING);
+        collector.onPlayerStateChanged(at(4100), true, Player.STATE_READY);
+
+        QoeStats stats = collector.getSnapshot(4600);
+
+        assertEquals(250, stats.startupTime);
+        assertEquals(1, stats.rebufferCount);
+        assertEquals(500, stats.rebufferDuration);
+        assertEquals(2800, stats.playingTime);
+        // 2000ms at 1 Mbps, 800ms at 2 Mbps
+        assertEquals((1000000L * 2000 + 2000000L * 800) / 2800, stats.averageBitrate);
+        assertEquals(1, stats.bitrateSwitchCount);
+
+        // as reported to tracking
+        assertEquals(1, rebuffers.size());
+        assertEquals(500, (long) rebuffers.get(0));
+        assertEquals(1, bitrates.size());
+        assertEquals(2000000, (int) bitrates.get(0));
+    }
+
+    @Test
+    public void getSnapshot_countsOngoingRebuffer() {
+        collector.onPlayerStateChanged(at(0), true, Player.STATE_READY);
+        collector.onPlayerStateChanged(at(1000), true, Player.STATE_BUFFERING);
+
+        QoeStats stats = collector.getSnapshot(1400);
+
+        assertEquals(1, stats.rebufferCount);
+        assertEquals(400, stats.rebufferDuration);
+        assertEquals(1000, stats.playingTime);
+        assertTrue(rebuffers.isEmpty());
+    }
+
+    private static AnalyticsListener.EventTime at(long realtimeMs) {
+        return new AnalyticsListener.EventTime(realtimeMs, Timeline.EMPTY, 0, null, 0, 0, 0);
+    }
+
+    private static MediaSourceEventListener.MediaLoadData video(int bitrate) {
+        Format format = Format.createVideoSampleFormat(null, MimeTypes.VIDEO_H264, null, bitrate, Format.NO_VALUE,
+                1280, 720, Format.NO_VALUE, null, null);
+
+        return new MediaSourceEventListener.MediaLoadData(C.DATA_TYPE_MEDIA, C.TRACK_TYPE_VIDEO, format,
+                C.SELECTION_REASON_ADAPTIVE, null, 0, 0);
+    }
+}
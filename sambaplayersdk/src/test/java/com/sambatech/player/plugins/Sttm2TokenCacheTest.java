@@ -0,0 +1,144 @@
+package com.sambatech.player.plugins;
+
+import android.support.annotation.NonNull;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class Sttm2TokenCacheTest {
+
+    private static final String JWT_URL = "http://api/jwt/abc1";
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final Executor inline = new Executor() {
+        @Override
+        public void execute(@NonNull Runnable task) {
+            task.run();
+        }
+    };
+
+    @Test
+    public void parse_readsExpirationFromClaims() throws Exception {
+        String claims = base64("{\"iat\":1000,\"exp\":1600}");
+        String key = base64("{\"alg\":\"HS256\"}") + "." + claims + ".sig";
+        // delimiter of "abc1" is a single character on each side
+        byte[] body = ("x" + base64("{\"key\":\"" + key + "\"}") + "x").getBytes(UTF_8);
+
+        Sttm2TokenCache.Token token = Sttm2TokenCache.parse(body, "abc1", "http://default", 5000);
+
+        assertEquals(key, token.key);
+        assertEquals("http://default", token.url);
+        // relative to the issuing, not to the device clock
+        assertEquals(5000 + 600000, token.expiresAt);
+        assertEquals(token.expiresAt - Sttm2TokenCache.REFRESH_MARGIN, token.refreshAt);
+    }
+
+    @Test
+    public void get_sharesSingleRequest() throws Exception {
+        final AtomicInteger fetches = new AtomicInteger();
+        final Sttm2TokenCache cache = new Sttm2TokenCache(new Sttm2TokenCache.Fetcher() {
+            @Override
+            public Sttm2TokenCache.Token fetch(@NonNull String jwtUrl, @NonNull String mediaId, String defaultUrl) {
+                fetches.incrementAndGet();
+                sleep(50);
+                return newToken("k", 60000, 30000);
+            }
+        }, inline);
+        final CountDownLatch done = new CountDownLatch(8);
+        final List<String> keys = new ArrayList<>();
+
+        for (int i = 0; i < 8; ++i) {
+            new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        String key = cache.get(JWT_URL, "abc1", null).key;
+
+                        synchronized (keys) {
+                            keys.add(key);
+                        }
+                    }
+                    catch (IOException e) {
+                        throw new RuntimeException(e);
+                    }
+                    finally {
+                        done.countDown();
+                    }
+                }
+            }).start();
+        }
+
+        done.await();
+        assertEquals(1, fetches.get());
+        assertEquals(8, keys.size());
+
+        // cached from now on
+        cache.get(JWT_URL, "abc1", null);
+        assertEquals(1, fetches.get());
+    }
+
+    @Test
+    public void get_refreshesBeforeExpiring() throws Exception {
+        final AtomicInteger fetches = new AtomicInteger();
+        Sttm2TokenCache cache = new Sttm2TokenCache(new Sttm2TokenCache.Fetcher() {
+            @Override
+            public Sttm2TokenCache.Token fetch(@NonNull String jwtUrl, @NonNull String mediaId, String defaultUrl) {
+                int n = fetches.incrementAndGet();
+                // the first one is due for refreshing right away
+                return newToken("k" + n, 60000, n == 1 ? -1 : 30000);
+            }
+        }, inline);
+
+        assertEquals("k1", cache.get(JWT_URL, "abc1", null).key);
+        // still valid, served while refreshing
+        assertEquals("k1", cache.get(JWT_URL, "abc1", null).key);
+        assertEquals("k2", cache.get(JWT_URL, "abc1", null).key);
+        assertEquals(2, fetches.get());
+    }
+
+    @Test
+    public void invalidate_requestsNewToken() throws Exception {
+        final AtomicInteger fetches = new AtomicInteger();
+        Sttm2TokenCache cache = new Sttm2TokenCache(new Sttm2TokenCache.Fetcher() {
+            @Override
+            public Sttm2TokenCache.Token fetch(@NonNull String jwtUrl, @NonNull String mediaId, String defaultUrl) {
+                return newToken("k" + fetches.incrementAndGet(), 60000, 30000);
+            }
+        }, inline);
+
+        Sttm2TokenCache.Token token = cache.get(JWT_URL, "abc1", null);
+
+        cache.invalidate(JWT_URL, token);
+        assertEquals("k2", cache.get(JWT_URL, "abc1", null).key);
+        // stale invalidations are ignored
+        cache.invalidate(JWT_URL, token);
+        assertEquals("k2", cache.get(JWT_URL, "abc1", null).key);
+    }
+
+    private static Sttm2TokenCache.Token newToken(String key, long ttl, long refreshIn) {
+        long now = System.currentTimeMillis();
+        return new Sttm2TokenCache.Token(key, "http://sttm2", now + ttl, now + refreshIn);
+    }
+
+    private static String base64(String s) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(s.getBytes(UTF_8));
+    }
+
+    private static void sleep(long ms) {
+        try {
+            Thread.sleep(ms);
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package com.sambatech.player.plugins;
+
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.TreeSet;
+
+import static org.junit.Assert.*;
+
+public class SttmProgressTest {
+
+    @Test
+    public void collect_matchesGoldenPayloads() throws Exception {
+        SttmProgress progress = new SttmProgress();
+        List<String> targets = new ArrayList<>();
+
+        // 4 Hz over a 100 s media, seeking back at 3 s
+        for (float t : new float[] {0f, .25f, .5f, 1f, 1.5f, 2f, 3f, 1f, 1.25f, 4f, 99.9f, 120f})
+            if (progress.track(t, 100f))
+                targets.add(progress.collect());
+
+        targets.add(progress.collect());
+        assertEquals("[p00,p01,p02,r00,r01,r02, p01,p03,p04,r03,r04, p99,r99]", targets.toString());
+        assertNull(progress.collect());
+    }
+
+    @Test
+    public void collect_matchesLegacyTracking() throws Exception {
+        Random random = new Random(42);
+
+        for (int session = 0; session < 200; ++session) {
+            SttmProgress progress = new SttmProgress();
+            LegacyProgress legacy = new LegacyProgress();
+            List<String> targets = new ArrayList<>();
+            List<String> legacyTargets = new ArrayList<>();
+            float duration = 1 + random.nextInt(3600);
+            float time = 0;
+
+            for (int tick = 0; tick < 2000; ++tick) {
+                // plays, occasionally seeking anywhere
+                time = random.nextInt(50) == 0 ? random.nextFloat() * duration * 1.1f : time + .25f;
+
+                if (progress.track(time, duration))
+                    targets.add(progress.collect());
+
+                if (legacy.track(time, duration))
+                    legacyTargets.add(legacy.collect());
+            }
+
+            if (progress.hasPending())
+                targets.add(progress.collect());
+
+            if (legacy.progresses.size() > 0)
+                legacyTargets.add(legacy.collect());
+
+            assertEquals(legacyTargets, targets);
+        }
+    }
+
+    @Test
+    public void track_allocatesNothing() throws Exception {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+
+        // allocation counters are only available on HotSpot based JVMs
+        if (!(threads instanceof com.sun.management.ThreadMXBean))
+            return;
+
+        com.sun.management.ThreadMXBean allocations = (com.sun.management.ThreadMXBean)threads;
+        SttmProgress progress = new SttmProgress();
+        int due = 0;
+        long before = 0;
+
+        // the second round runs warmed up, never collecting (a single bucket pending)
+        for (int round = 0; round < 2; ++round) {
+            before = allocations.getThreadAllocatedBytes(Thread.currentThread().getId());
+
+            for (int i = 0; i < 100000; ++i)
+                if (progress.track(10f, 100f))
+                    ++due;
+        }
+
+        long allocated = allocations.getThreadAllocatedBytes(Thread.currentThread().getId()) - before;
+
+        // tolerates the measurement itself
+        assertTrue("Allocated " + allocated + " bytes", allocated < 1024);
+        assertEquals(0, due);
+    }
+
+    /**
+     * Tracking as it used to be done by <code>TrackingVOD</code> (reference).
+     */
+    static class LegacyProgress {
+        final TreeSet<String> progresses = new TreeSet<>();
+        final HashSet<Integer> trackedRetentions = new HashSet<>();
+
+        boolean track(float time, float duration) {
+            int p = (int) (100 * time / duration);
+
+            if (p > 99)
+                p = 99;
+
+            progresses.add(String.format(Locale.US, "p%02d", p));
+
+            if (!trackedRetentions.contains(p))
+                progresses.add(String.format(Locale.US, "r%02d", p));
+
+            trackedRetentions.add(p);
+
+            return progresses.size() >= 5;
+        }
+
+        String collect() {
+            StringBuilder sb = new StringBuilder();
+
+            for (String s : progresses)
+                sb.append(sb.length() > 0 ? "," : "").append(s);
+
+            progresses.clear();
+            return sb.toString();
+        }
+    }
+}
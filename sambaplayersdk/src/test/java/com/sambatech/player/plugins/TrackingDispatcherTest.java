@@ -0,0 +1,210 @@
+package com.sambatech.player.plugins;
+
+import android.support.annotation.NonNull;
+
+import com.sambatech.player.model.SambaMediaConfig;
+import com.sambatech.player.utils.SambaScheduler;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import static org.junit.Assert.*;
+
+public class TrackingDispatcherTest {
+
+    private static final Executor inline = new Executor() {
+        @Override
+        public void execute(@NonNull Runnable task) {
+            task.run();
+        }
+    };
+
+    private SambaScheduler.VirtualDriver driver;
+    private TrackingDispatcher dispatcher;
+    private SambaMediaConfig media;
+
+    @Before
+    public void setUp() {
+        driver = new SambaScheduler.VirtualDriver();
+        dispatcher = new TrackingDispatcher(new SambaScheduler(driver), inline);
+        media = new SambaMediaConfig();
+        media.id = "abc1";
+        media.projectHash = "hash";
+        media.sttmUrl = "http://sttm";
+        media.sessionId = "s1";
+    }
+
+    @Test
+    public void dispatch_batchesBySizeAndDelay() throws Exception {
+        RecordingSink sink = new RecordingSink();
+
+        dispatcher.addSink(sink);
+
+        for (int i = 0; i < TrackingDispatcher.BATCH_SIZE + 1; ++i)
+            dispatcher.dispatch(TrackingEvent.progress(media, i));
+
+        assertEquals(1, sink.batches.size());
+        assertEquals(TrackingDispatcher.BATCH_SIZE, sink.batches.get(0).size());
+
+        driver.advance(TrackingDispatcher.MAX_DELAY - 1);
+        assertEquals(1, sink.batches.size());
+
+        driver.advance(1);
+        assertEquals(2, sink.batches.size());
+        assertEquals(TrackingDispatcher.BATCH_SIZE, sink.batches.get(1).get(0).percentile);
+        assertFalse(driver.hasPendingWakeUp());
+    }
+
+    @Test
+    public void dispatch_deliversEndingSessionsRightAway() throws Exception {
+        RecordingSink sink = new RecordingSink();
+
+        dispatcher.addSink(sink);
+        dispatcher.dispatch(TrackingEvent.of(TrackingEvent.Type.START, media));
+        dispatcher.dispatch(TrackingEvent.of(TrackingEvent.Type.END, media));
+
+        assertEquals(1, sink.batches.size());
+        assertEquals(2, sink.batches.get(0).size());
+        assertFalse(driver.hasPendingWakeUp());
+    }
+
+    @Test
+    public void dispatch_discardsOldestWhenFull() throws Exception {
+        final List<Runnable> deliveries = new ArrayList<>();
+        RecordingSink sink = new RecordingSink();
+        // sinks stuck, nothing delivered meanwhile
+        TrackingDispatcher stalled = new TrackingDispatcher(new SambaScheduler(driver), new Executor() {
+            @Override
+            public void execute(@NonNull Runnable task) {
+                deliveries.add(task);
+            }
+        });
+
+        stalled.addSink(sink);
+
+        for (int i = 0; i < TrackingDispatcher.CAPACITY + 10; ++i)
+            stalled.dispatch(TrackingEvent.progress(media, i % 100));
+
+        assertEquals(10, stalled.getDroppedCount());
+        assertEquals(TrackingDispatcher.CAPACITY, stalled.getPendingCount());
+        assertEquals(1, deliveries.size());
+
+        deliveries.get(0).run();
+        assertEquals(10, sink.batches.get(0).get(0).percentile);
+    }
+
+    @Test
+    public void dispatch_neverDiscardsLifecycleEvents() throws Exception {
+        final List<Runnable> deliveries = new ArrayList<>();
+        RecordingSink sink = new RecordingSink();
+        TrackingDispatcher stalled = new TrackingDispatcher(new SambaScheduler(driver), new Executor() {
+            @Override
+            public void execute(@NonNull Runnable task) {
+                deliveries.add(task);
+            }
+        });
+
+        stalled.addSink(sink);
+        stalled.dispatch(TrackingEvent.of(TrackingEvent.Type.START, media));
+        stalled.dispatch(TrackingEvent.rebuffer(media, 1000));
+
+        for (int i = 0; i < TrackingDispatcher.CAPACITY - 2; ++i)
+            stalled.dispatch(TrackingEvent.progress(media, i % 100));
+
+        // progress first, then rebuffers
+        stalled.dispatch(TrackingEvent.of(TrackingEvent.Type.PAUSE, media));
+        stalled.dispatch(TrackingEvent.bitrateSwitch(media, 500000));
+
+        for (int i = 0; i < TrackingDispatcher.CAPACITY; ++i)
+            stalled.dispatch(TrackingEvent.of(TrackingEvent.Type.PLAY, media));
+
+        // full of lifecycle events, the newest periodic ones go instead
+        stalled.dispatch(TrackingEvent.progress(media, 99));
+        stalled.dispatch(TrackingEvent.of(TrackingEvent.Type.COMPLETE, media));
+
+        assertEquals(TrackingDispatcher.CAPACITY + 1, stalled.getDroppedCount());
+        assertEquals(TrackingDispatcher.CAPACITY + 3, stalled.getPendingCount());
+
+        stalled.flush();
+        deliveries.get(0).run();
+
+        List<TrackingEvent> events = new ArrayList<>();
+
+        for (List<TrackingEvent> batch : sink.batches)
+            events.addAll(batch);
+
+        assertEquals(TrackingEvent.Type.START, events.get(0).type);
+        assertEquals(TrackingEvent.Type.PAUSE, events.get(1).type);
+        assertEquals(TrackingEvent.Type.PLAY, events.get(2).type);
+        assertEquals(TrackingEvent.Type.COMPLETE, events.get(events.size() - 1).type);
+    }
+
+    @Test
+    public void dispatch_isolatesFailingSinks() throws Exception {
+        RecordingSink sink = new RecordingSink();
+
+        dispatcher.addSink(new TrackingSink() {
+            @Override
+            public void onEvents(@NonNull List<TrackingEvent> events) throws IOException {
+                throw new IOException("Offline");
+            }
+        });
+        dispatcher.addSink(sink);
+        dispatcher.dispatch(TrackingEvent.of(TrackingEvent.Type.START, media));
+        dispatcher.flush();
+
+        assertEquals(1, sink.batches.size());
+    }
+
+    @Test
+    public void sttmSink_buildsHitsPerSession() throws Exception {
+        File file = File.createTempFile("spool", null);
+        final List<String> hits = new ArrayList<>();
+
+        try {
+            file.delete();
+
+            TrackingSpool spool = new TrackingSpool(file, null, new SambaScheduler(driver), inline);
+
+            dispatcher.addSink(new SttmSink(spool));
+            // records instead of requesting
+            spool.setSender(SttmSink.CHANNEL_STTM, new TrackingSpool.Sender() {
+                @Override
+                public void send(@NonNull TrackingSpool.Hit hit) {
+                    hits.add(hit.payload.substring(hit.payload.indexOf("sttmm=") + 6, hit.payload.indexOf("&")));
+                }
+            });
+
+            // progress before starting is ignored
+            dispatcher.dispatch(TrackingEvent.progress(media, 0));
+            dispatcher.dispatch(TrackingEvent.of(TrackingEvent.Type.START, media));
+
+            for (int p = 0; p < 4; ++p)
+                dispatcher.dispatch(TrackingEvent.progress(media, p));
+
+            dispatcher.flush();
+            dispatcher.dispatch(TrackingEvent.of(TrackingEvent.Type.COMPLETE, media));
+            dispatcher.dispatch(TrackingEvent.of(TrackingEvent.Type.END, media));
+
+            assertEquals("[play,p00,p01,p02,r00,r01,r02, p03,r03,complete]", hits.toString());
+        }
+        finally {
+            file.delete();
+        }
+    }
+
+    private static class RecordingSink implements TrackingSink {
+        final List<List<TrackingEvent>> batches = new ArrayList<>();
+
+        @Override
+        public void onEvents(@NonNull List<TrackingEvent> events) {
+            batches.add(events);
+        }
+    }
+}
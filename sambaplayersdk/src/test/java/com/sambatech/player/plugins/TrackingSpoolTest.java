@@ -0,0 +1,148 @@
+package com.sambatech.player.plugins;
+
+import android.support.annotation.NonNull;
+
+import com.sambatech.player.utils.SambaScheduler;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import static org.junit.Assert.*;
+
+public class TrackingSpoolTest {
+
+    private static final Executor inline = new Executor() {
+        @Override
+        public void execute(@NonNull Runnable task) {
+            task.run();
+        }
+    };
+
+    private File file;
+    private SambaScheduler.VirtualDriver driver;
+    private SambaScheduler scheduler;
+
+    @Before
+    public void setUp() throws Exception {
+        file = File.createTempFile("spool", null);
+        file.delete();
+        driver = new SambaScheduler.VirtualDriver();
+        scheduler = new SambaScheduler(driver);
+    }
+
+    @After
+    public void tearDown() {
+        file.delete();
+    }
+
+    @Test
+    public void flush_sendsPendingHitsAcrossInstances() throws Exception {
+        RecordingSender failing = new RecordingSender(true);
+        TrackingSpool spool = newSpool(failing);
+
+        spool.enqueue("a", "test", "1");
+        spool.enqueue("b", "test", "2");
+        spool.flush();
+        assertEquals("[1]", failing.attempts.toString());
+        assertEquals(2, spool.getPendingCount());
+
+        // e.g. a new session after the process got killed
+        RecordingSender sender = new RecordingSender(false);
+        TrackingSpool restored = newSpool(sender);
+
+        restored.enqueue("c", "test", "3");
+        restored.flush();
+        assertEquals("[1, 2, 3]", sender.attempts.toString());
+        assertEquals(0, restored.getPendingCount());
+
+        RecordingSender next = new RecordingSender(false);
+
+        newSpool(next).flush();
+        assertTrue(next.attempts.isEmpty());
+    }
+
+    @Test
+    public void flush_retriesWithBackoff() throws Exception {
+        RecordingSender sender = new RecordingSender(true);
+        TrackingSpool spool = newSpool(sender);
+
+        spool.enqueue("a", "test", "1");
+        spool.flush();
+        // waiting to retry
+        spool.flush();
+        driver.advance(TrackingSpool.MIN_BACKOFF - 1);
+        assertEquals(1, sender.attempts.size());
+
+        driver.advance(1);
+        assertEquals(2, sender.attempts.size());
+
+        driver.advance(2 * TrackingSpool.MIN_BACKOFF - 1);
+        assertEquals(2, sender.attempts.size());
+
+        sender.isFailing = false;
+        driver.advance(1);
+        assertEquals(3, sender.attempts.size());
+        assertEquals(0, spool.getPendingCount());
+        assertFalse(driver.hasPendingWakeUp());
+    }
+
+    @Test
+    public void enqueue_ignoresDuplicateKeys() throws Exception {
+        RecordingSender sender = new RecordingSender(false);
+        TrackingSpool spool = newSpool(sender);
+
+        spool.enqueue("a", "test", "1");
+        spool.enqueue("a", "test", "1");
+        spool.flush();
+        spool.enqueue("a", "test", "1");
+        spool.flush();
+        assertEquals("[1]", sender.attempts.toString());
+    }
+
+    @Test
+    public void enqueue_capsPendingSize() throws Exception {
+        TrackingSpool spool = newSpool(new RecordingSender(true));
+        StringBuilder payload = new StringBuilder();
+
+        while (payload.length() < 1000)
+            payload.append("0123456789");
+
+        for (int i = 0; i < 200; ++i)
+            spool.enqueue("k" + i, "test", payload.toString());
+
+        assertTrue(spool.getDroppedCount() > 0);
+        assertTrue(spool.getPendingCount() * 2000 <= TrackingSpool.MAX_BYTES);
+        assertTrue(file.length() < 2 * TrackingSpool.MAX_BYTES);
+    }
+
+    private TrackingSpool newSpool(TrackingSpool.Sender sender) {
+        TrackingSpool spool = new TrackingSpool(file, null, scheduler, inline);
+
+        spool.setSender("test", sender);
+        return spool;
+    }
+
+    private static class RecordingSender implements TrackingSpool.Sender {
+        final List<String> attempts = new ArrayList<>();
+        boolean isFailing;
+
+        RecordingSender(boolean isFailing) {
+            this.isFailing = isFailing;
+        }
+
+        @Override
+        public void send(@NonNull TrackingSpool.Hit hit) throws IOException {
+            attempts.add(hit.payload);
+
+            if (isFailing)
+                throw new IOException("Offline");
+        }
+    }
+}
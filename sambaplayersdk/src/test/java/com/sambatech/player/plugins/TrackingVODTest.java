@@ -0,0 +1,188 @@
+package com.sambatech.player.plugins;
+
+import android.support.annotation.NonNull;
+
+import com.sambatech.player.event.SambaErrorEvent;
+import com.sambatech.player.event.SambaEvent;
+import com.sambatech.player.event.SambaEventRecorder;
+import com.sambatech.player.event.SambaEventReplayer;
+import com.sambatech.player.event.SambaPlayerEventBus;
+import com.sambatech.player.event.SambaPlayerListener;
+import com.sambatech.player.event.SambaProgressEvent;
+import com.sambatech.player.model.SambaMediaConfig;
+import com.sambatech.player.model.SambaPlayerError;
+import com.sambatech.player.utils.SambaScheduler;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Executor;
+
+import static org.junit.Assert.*;
+
+public class TrackingVODTest {
+
+    private static final Executor inline = new Executor() {
+        @Override
+        public void execute(@NonNull Runnable task) {
+            task.run();
+        }
+    };
+
+    private SambaScheduler.VirtualDriver driver;
+    private TrackingDispatcher dispatcher;
+    private SambaMediaConfig media;
+
+    @Before
+    public void setUp() {
+        driver = new SambaScheduler.VirtualDriver();
+        dispatcher = new TrackingDispatcher(new SambaScheduler(driver), inline);
+        media = new SambaMediaConfig();
+        media.id = "abc1";
+        media.projectHash = "hash";
+        media.sttmUrl = "http://sttm";
+        media.sessionId = "s1";
+    }
+
+    @Test
+    public void attach_tracksReplayedSession() throws Exception {
+        final List<TrackingEvent> events = new ArrayList<>();
+        TrackingVOD tracking = new TrackingVOD();
+        SambaPlayerEventBus bus = new SambaPlayerEventBus();
+
+        dispatcher.addSink(new TrackingSink() {
+            @Override
+            public void onEvents(@NonNull List<TrackingEvent> batch) {
+                events.addAll(batch);
+            }
+        });
+        tracking.attach(media, bus, dispatcher);
+        new SambaEventReplayer(new ByteArrayInputStream(record())).replay(bus, SambaEventReplayer.AS_FAST_AS_POSSIBLE);
+
+        // batched, nothing delivered yet
+        assertTrue(events.isEmpty());
+
+        tracking.onDestroy();
+
+        List<String> tracked = new ArrayList<>();
+
+        for (TrackingEvent event : events)
+            tracked.add(event.type == TrackingEvent.Type.PROGRESS ? "p" + event.percentile
+                    : event.type == TrackingEvent.Type.ERROR ? event.type + ":" + event.value : event.type.toString());
+
+        assertEquals("[START, p0, p1, p2, ERROR:7, p3, COMPLETE, END]", tracked.toString());
+        assertFalse(driver.hasPendingWakeUp());
+    }
+
+    @Test
+    public void sttmSink_matchesGoldenPayloads() throws Exception {
+        List<Float> times = new ArrayList<>();
+
+        // 4 Hz over a 100 s media
+        for (int tick = 0; tick <= 25; ++tick)
+            times.add(tick * .25f);
+
+        // the current percentile is tracked again right after being collected
+        assertEquals("play,p00,p01,p02,r00,r01,r02,p02,p03,p04,r03,r04,p04,p05,p06,r05,r06,p06,complete",
+                trackSttm(times, 100f));
+    }
+
+    @Test
+    public void sttmSink_matchesLegacyTracking() throws Exception {
+        Random random = new Random(42);
+
+        for (int session = 0; session < 50; ++session) {
+            SttmProgressTest.LegacyProgress legacy = new SttmProgressTest.LegacyProgress();
+            StringBuilder legacyTargets = new StringBuilder("play");
+            List<Float> times = new ArrayList<>();
+            float duration = 1 + random.nextInt(3600);
+            float time = 0;
+
+            for (int tick = 0; tick < 2000; ++tick) {
+                // plays, occasionally seeking anywhere
+                time = random.nextInt(50) == 0 ? random.nextFloat() * duration * 1.1f : time + .25f;
+                times.add(time);
+
+                if (legacy.track(time, duration))
+                    legacyTargets.append(',').append(legacy.collect());
+            }
+
+            if (legacy.progresses.size() > 0)
+                legacyTargets.append(',').append(legacy.collect());
+
+            assertEquals(legacyTargets.append(",complete").toString(), trackSttm(times, duration));
+        }
+    }
+
+    /**
+     * Plays a session through <code>TrackingVOD</code> and the STTM sink.
+     * @return The targets of every hit sent (sttmm)
+     */
+    private String trackSttm(List<Float> times, float duration) throws Exception {
+        File file = File.createTempFile("spool", null);
+        final StringBuilder targets = new StringBuilder();
+
+        try {
+            file.delete();
+
+            SambaScheduler scheduler = new SambaScheduler(driver);
+            TrackingDispatcher dispatcher = new TrackingDispatcher(scheduler, inline);
+            TrackingSpool spool = new TrackingSpool(file, null, scheduler, inline);
+            TrackingVOD tracking = new TrackingVOD();
+            SambaPlayerEventBus bus = new SambaPlayerEventBus();
+            SambaProgressEvent progress = new SambaProgressEvent();
+
+            dispatcher.addSink(new SttmSink(spool));
+            spool.setSender(SttmSink.CHANNEL_STTM, new TrackingSpool.Sender() {
+                @Override
+                public void send(@NonNull TrackingSpool.Hit hit) {
+                    targets.append(targets.length() > 0 ? "," : "")
+                            .append(hit.payload.substring(hit.payload.indexOf("sttmm=") + 6, hit.payload.indexOf("&")));
+                }
+            });
+            tracking.attach(media, bus, dispatcher);
+
+            bus.post(SambaEvent.of(SambaPlayerListener.EventType.START));
+
+            for (float time : times)
+                bus.post(progress.set(time, duration));
+
+            bus.post(SambaEvent.of(SambaPlayerListener.EventType.FINISH));
+            tracking.onDestroy();
+
+            return targets.toString();
+        }
+        finally {
+            file.delete();
+        }
+    }
+
+    /**
+     * A short session over a 100 s media.
+     */
+    private static byte[] record() throws Exception {
+        SambaPlayerEventBus source = new SambaPlayerEventBus();
+        ByteArrayOutputStream log = new ByteArrayOutputStream();
+        SambaEventRecorder recorder = new SambaEventRecorder(log);
+        SambaProgressEvent progress = new SambaProgressEvent();
+
+        recorder.start(source);
+        source.post(SambaEvent.of(SambaPlayerListener.EventType.LOAD));
+        source.post(SambaEvent.of(SambaPlayerListener.EventType.START));
+        source.post(progress.set(0f, 100f, 10f));
+        source.post(progress.set(1f, 100f, 10f));
+        source.post(progress.set(2f, 100f, 10f));
+        source.post(new SambaErrorEvent(SambaPlayerError.unknown, 7, "Recorded", SambaPlayerError.Severity.recoverable));
+        source.post(progress.set(3f, 100f, 10f));
+        source.post(SambaEvent.of(SambaPlayerListener.EventType.FINISH));
+        recorder.stop();
+
+        return log.toByteArray();
+    }
+}
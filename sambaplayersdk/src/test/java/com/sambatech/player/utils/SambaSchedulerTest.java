@@ -0,0 +1,93 @@
+package com.sambatech.player.utils;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class SambaSchedulerTest {
+
+	private SambaScheduler.VirtualDriver driver;
+	private SambaScheduler scheduler;
+	private List<String> runs;
+
+	@Before
+	public void setUp() {
+		driver = new SambaScheduler.VirtualDriver();
+		scheduler = new SambaScheduler(driver);
+		runs = new ArrayList<>();
+	}
+
+	@Test
+	public void schedulePeriodic_runsPeriodically() throws Exception {
+		scheduler.schedulePeriodic(record("a"), 250);
+		scheduler.schedulePeriodic(record("b"), 100, 400);
+
+		driver.advance(1000);
+		assertEquals("[a@0, b@100, a@250, a@500, b@500, a@750, b@900, a@1000]", runs.toString());
+		// co-due tasks share wake-ups
+		assertEquals(7, driver.getWakeUpCount());
+	}
+
+	@Test
+	public void schedule_runsOnceAndIdles() throws Exception {
+		scheduler.schedule(record("a"), 300);
+		scheduler.schedule(record("b"), 100);
+
+		driver.advance(1000);
+		assertEquals("[b@100, a@300]", runs.toString());
+		assertFalse(driver.hasPendingWakeUp());
+	}
+
+	@Test
+	public void schedule_coalescesNearlyDueTasks() throws Exception {
+		scheduler.schedulePeriodic(record("a"), 1000, 1000);
+		scheduler.schedulePeriodic(record("b"), 1005, 60000);
+
+		driver.advance(1100);
+		assertEquals("[a@1000, b@1000]", runs.toString());
+		assertEquals(1, driver.getWakeUpCount());
+	}
+
+	@Test
+	public void cancel_stopsTaskAndIdles() throws Exception {
+		final SambaScheduler.Task[] task = new SambaScheduler.Task[1];
+
+		task[0] = scheduler.schedulePeriodic(new Runnable() {
+			@Override
+			public void run() {
+				runs.add("a@" + driver.now());
+
+				if (runs.size() == 3)
+					task[0].cancel();
+			}
+		}, 100);
+
+		driver.advance(1000);
+		assertEquals("[a@0, a@100, a@200]", runs.toString());
+		assertTrue(task[0].isCancelled());
+		assertFalse(driver.hasPendingWakeUp());
+	}
+
+	@Test
+	public void setInterval_appliesFromLastRun() throws Exception {
+		SambaScheduler.Task task = scheduler.schedulePeriodic(record("a"), 250);
+
+		driver.advance(300);
+		task.setInterval(1000);
+		driver.advance(1700);
+		assertEquals("[a@0, a@250, a@1250]", runs.toString());
+	}
+
+	private Runnable record(final String name) {
+		return new Runnable() {
+			@Override
+			public void run() {
+				runs.add(name + "@" + driver.now());
+			}
+		};
+	}
+}
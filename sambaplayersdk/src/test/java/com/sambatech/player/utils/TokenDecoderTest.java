@@ -0,0 +1,68 @@
+package com.sambatech.player.utils;
+
+import org.junit.Test;
+
+import java.nio.charset.Charset;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class TokenDecoderTest {
+
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+	@Test
+	public void getDelimiter_lastDigitFollowedByLetters() throws Exception {
+		assertEquals(0, TokenDecoder.getDelimiter(null));
+		assertEquals(2, TokenDecoder.getDelimiter("0632f26a442ba9ba3bb9067a45e239e2"));
+		assertEquals(9, TokenDecoder.getDelimiter("a1b2c9ef"));
+		assertEquals(7, TokenDecoder.getDelimiter("abc7"));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void getDelimiter_invalidId() throws Exception {
+		TokenDecoder.getDelimiter("abc-def");
+	}
+
+	@Test
+	public void decode_matchesStandardDecoder() throws Exception {
+		Random random = new Random(42);
+
+		for (int length = 0; length < 200; ++length) {
+			byte[] data = new byte[length];
+			random.nextBytes(data);
+
+			for (int delimiter = 0; delimiter < 10; delimiter += 3) {
+				byte[] token = wrap(urlSafe(data), delimiter);
+				assertArrayEquals(data, TokenDecoder.decode(token, delimiter));
+			}
+		}
+	}
+
+	@Test
+	public void decode_ignoresPaddingAndLineBreaks() throws Exception {
+		byte[] data = "{\"title\":\"Samba\"}".getBytes(UTF_8);
+		String encoded = java.util.Base64.getEncoder().encodeToString(data);
+
+		assertArrayEquals(data, TokenDecoder.decode((encoded + "\n").getBytes(UTF_8), 0));
+		assertArrayEquals(data, TokenDecoder.decode(("xx" + encoded + "xx").getBytes(UTF_8), 2));
+	}
+
+	private static String urlSafe(byte[] data) {
+		return java.util.Base64.getUrlEncoder().withoutPadding().encodeToString(data);
+	}
+
+	private static byte[] wrap(String token, int delimiter) {
+		StringBuilder sb = new StringBuilder();
+
+		for (int i = 0; i < delimiter; ++i)
+			sb.append('z');
+
+		sb.append(token);
+
+		for (int i = 0; i < delimiter; ++i)
+			sb.append('z');
+
+		return sb.toString().getBytes(UTF_8);
+	}
+}
@@ -0,0 +1,48 @@
+package com.sambatech.player.utils;
+
+import com.sambatech.player.model.SambaMediaRequest.Protocol;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class UrlRewriterTest {
+
+	@Test
+	public void normalizeProtocol_rewritesSchemeOnly() throws Exception {
+		assertEquals("https://cdn.test/http/a.mp4", UrlRewriter.normalizeProtocol("http://cdn.test/http/a.mp4", Protocol.HTTPS));
+		assertEquals("http://cdn.test/https/a.mp4", UrlRewriter.normalizeProtocol("https://cdn.test/https/a.mp4", Protocol.HTTP));
+		assertEquals("http://cdn.test/a.mp4?u=https://x", UrlRewriter.normalizeProtocol("HTTPS://cdn.test/a.mp4?u=https://x", Protocol.HTTP));
+	}
+
+	@Test
+	public void normalizeProtocol_keepsInstanceWhenUnchanged() throws Exception {
+		String https = "https://cdn.test/a.mp4";
+		String http = "http://cdn.test/a.mp4";
+
+		assertSame(https, UrlRewriter.normalizeProtocol(https, Protocol.HTTPS));
+		assertSame(http, UrlRewriter.normalizeProtocol(http, Protocol.HTTP));
+	}
+
+	@Test
+	public void normalizeProtocol_ignoresOtherSchemes() throws Exception {
+		for (String url : new String[]{"", "http", "//cdn.test/a.mp4", "ftp://cdn.test/a.mp4", "httpx://cdn.test", "/http/a.mp4"})
+			assertSame(url, UrlRewriter.normalizeProtocol(url, Protocol.HTTPS));
+	}
+
+	@Test
+	public void replaceHdsManifest() throws Exception {
+		assertEquals("http://live.test/stream/playlist.m3u8", UrlRewriter.replaceHdsManifest("http://live.test/stream/manifest.f4m"));
+		assertEquals("http://live.test/stream/playlist.m3u8", UrlRewriter.replaceHdsManifest("http://live.test/stream/my_live_01.f4m"));
+		assertEquals("http://live.test/a-playlist.m3u8", UrlRewriter.replaceHdsManifest("http://live.test/a-b.f4m"));
+
+		for (String url : new String[]{"", ".f4m", "http://live.test/.f4m", "http://live.test/a.f4m?x=1", "http://live.test/a.m3u8"})
+			assertSame(url, UrlRewriter.replaceHdsManifest(url));
+	}
+
+	@Test
+	public void replaceHdsManifest_matchesFormerRegex() throws Exception {
+		for (String url : new String[]{"http://l.test/manifest.f4m", "http://l.test/a-b.f4m", "http://l.test/x.f4m.f4m", "a.f4m", "http://l.test/.f4m"})
+			assertEquals(url, url.replaceAll("[\\w]+\\.f4m$", "playlist.m3u8"), UrlRewriter.replaceHdsManifest(url));
+	}
+}
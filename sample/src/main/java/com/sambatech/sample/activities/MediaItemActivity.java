@@ -17,7 +17,6 @@ import com.sambatech.player.cast.CastOptionsProvider;
 import com.sambatech.player.cast.SambaCast;
 import com.sambatech.player.event.SambaApiCallback;
 import com.sambatech.player.event.SambaEvent;
-import com.sambatech.player.event.SambaEventBus;
 import com.sambatech.player.event.SambaPlayerListener;
 import com.sambatech.player.model.AdsSettings;
 import com.sambatech.player.model.SambaMedia;
@@ -223,7 +222,7 @@ public class MediaItemActivity extends AppCompatActivity {
 		sambaCast = new SambaCast(this);
 		sambaCast.setCastButtonOut(true);
 
-		SambaEventBus.subscribe(playerListener);
+		player.getEventBus().subscribe(playerListener);
 
 		requestMedia(activityMedia);
 
@@ -520,7 +519,7 @@ public class MediaItemActivity extends AppCompatActivity {
 	void authorize() { authorize(false); }
 
 	private void destroy() {
-		SambaEventBus.unsubscribe(playerListener);
+		player.getEventBus().unsubscribe(playerListener);
 		player.destroy();
 	}
 }